@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.awt.Color;
+
+import inteligenca.Inteligenca;
+import logika.Igra;
+import logika.Igra.Player;
+import splosno.Koordinati;
+
+/**
+ * A headless benchmark of how the engine scales with the size of the board. For
+ * each size, the positions of SearchBenchmark are placed at the center of the
+ * board and searched. We report the number of visited nodes per second, the
+ * number of bytes allocated per node and the memory taken by a single copy of
+ * the game.
+ */
+
+public class BoardSizeBenchmark {
+
+	static final int[] SIZES = { 15, 19, 25, 31 };
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+
+		System.out.printf("%6s %12s %12s %12s%n", "size", "nodes/s", "bytes/node", "bytes/game");
+		for (int size : SIZES) {
+			// Warm up the JIT before measuring.
+			run(size, 1);
+
+			long bytes = Memory.allocatedBytes();
+			long start = System.nanoTime();
+
+			long nodes = run(size, rounds);
+
+			long time = System.nanoTime() - start;
+			bytes = Memory.allocatedBytes() - bytes;
+
+			System.out.printf("%6d %12.0f %12.0f %12d%n", size, nodes / (time / 1e9), (double) bytes / nodes,
+					footprint(size));
+		}
+	}
+
+	/**
+	 * Searches every position @rounds times and returns the number of nodes.
+	 */
+	private static long run(int size, int rounds) {
+		long nodes = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int[][] moves : SearchBenchmark.POSITIONS) {
+				Inteligenca bot = new Inteligenca("Benchmark", Color.BLACK);
+				bot.setLimits(SearchBenchmark.DEPTH, 0, 0);
+				bot.calculate(position(size, moves));
+				nodes += bot.nodes();
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Builds a game from a sequence of moves, moved to the center of the board.
+	 */
+	private static Igra position(int size, int[][] moves) {
+		int offset = (size - 15) / 2;
+		Igra game = new Igra(Player.Black, size);
+		for (int[] move : moves) {
+			game.odigraj(new Koordinati(move[0] + offset, move[1] + offset));
+		}
+		return game;
+	}
+
+	/**
+	 * Estimates the memory taken by a copy of a game in the middle of a game, by
+	 * measuring the heap before and after creating many copies.
+	 */
+	private static long footprint(int size) {
+		int count = 2000;
+		Igra game = position(size, SearchBenchmark.POSITIONS[SearchBenchmark.POSITIONS.length - 1]);
+		Igra[] copies = new Igra[count];
+
+		long before = Memory.usedHeap();
+		for (int i = 0; i < count; i++) {
+			copies[i] = new Igra(game);
+		}
+		long after = Memory.usedHeap();
+
+		return (after - before) / copies.length;
+	}
+}
@@ -0,0 +1,40 @@
+package benchmark;
+
+import java.awt.Color;
+
+import inteligenca.Inteligenca;
+import inteligenca.TranspositionTable;
+import logika.Igra;
+import logika.Igra.GameState;
+
+/**
+ * Plays a session of games of the computer against itself and reports, every
+ * few games, the heap in use and the hit rate of the transposition table. The
+ * heap should stay flat, since the table is bounded.
+ */
+
+public class CacheBenchmark {
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int every = Math.max(1, games / 20);
+
+		TranspositionTable table = Inteligenca.table();
+		Inteligenca bot = new Inteligenca("Benchmark", Color.BLACK);
+		bot.setLimits(SearchBenchmark.DEPTH, 0, 0);
+		System.out.printf("capacity: %d entries%n", table.capacity());
+		for (int i = 1; i <= games; i++) {
+			Igra game = new Igra();
+			while (game.state() == GameState.IN_PROGRESS) {
+				game.play(bot.calculate(game));
+			}
+
+			if (i % every == 0) {
+				long hits = table.hits();
+				long misses = table.misses();
+				System.out.printf("games: %d, heap: %.1f MB, hit rate: %.1f %%%n", i, Memory.usedHeap() / 1e6,
+						100.0 * hits / (hits + misses));
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package benchmark;
+
+import java.awt.Color;
+
+import inteligenca.Inteligenca;
+import logika.Igra;
+
+/**
+ * Measures the time to depth: how long the search takes to complete every
+ * iteration up to a number of plies on the positions of SearchBenchmark. Every
+ * search starts with an empty transposition table, so that searches are alike.
+ */
+
+public class DepthBenchmark {
+
+	public static void main(String[] args) {
+		int plies = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		// Warm up the JIT before measuring.
+		for (int depth = 1; depth <= plies; depth++) {
+			search(depth, 1);
+		}
+
+		for (int depth = 1; depth <= plies; depth++) {
+			long[] result = search(depth, rounds);
+			System.out.printf("depth: %d, nodes: %d, time: %.1f ms%n", depth, result[0] / rounds,
+					result[1] / 1e6 / rounds);
+		}
+	}
+
+	/**
+	 * Searches every position @rounds times to the @depth and returns the number
+	 * of nodes and the time in nanoseconds.
+	 */
+	private static long[] search(int depth, int rounds) {
+		long nodes = 0;
+		long time = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int[][] moves : SearchBenchmark.POSITIONS) {
+				Inteligenca.table().clear();
+				Inteligenca bot = new Inteligenca("Benchmark", Color.BLACK);
+				bot.setLimits(depth, 0, 0);
+				Igra game = SearchBenchmark.position(moves);
+				long start = System.nanoTime();
+				bot.calculate(game);
+				time += System.nanoTime() - start;
+				nodes += bot.nodes();
+			}
+		}
+		return new long[] { nodes, time };
+	}
+}
@@ -0,0 +1,168 @@
+package benchmark;
+
+import inteligenca.Evaluator;
+import inteligenca.LineEvaluator;
+import inteligenca.Patterns;
+import logika.Igra;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * A headless benchmark of the static evaluation. For every candidate move of
+ * the positions of SearchBenchmark, it evaluates the position after the move,
+ * once with an Evaluator (a full scan of the board) and once with a
+ * LineEvaluator that follows the game, as the search does. It reports the
+ * number of evaluations per second of both and the bytes the full evaluation
+ * allocates. The positions are built before the evaluations are measured.
+ *
+ * It also measures how long it takes to score all the children of a position
+ * from scratch, by scoring the four lines through each candidate (see
+ * estimate()).
+ */
+
+public class EvaluatorBenchmark {
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+		Igra[] games = positions();
+		Bitboard[] candidates = new Bitboard[games.length];
+		LineEvaluator[] evaluators = new LineEvaluator[games.length];
+		for (int i = 0; i < games.length; i++) {
+			candidates[i] = new Bitboard(games[i].candidates());
+			evaluators[i] = new LineEvaluator(games[i]);
+		}
+
+		// Warm up the JIT before measuring.
+		full(games, candidates, rounds / 10);
+		incremental(games, candidates, evaluators, rounds / 10);
+
+		long bytes = Memory.allocatedBytes();
+		long start = System.nanoTime();
+		long evaluations = full(games, candidates, rounds);
+		double fullRate = evaluations / ((System.nanoTime() - start) / 1e9);
+		bytes = Memory.allocatedBytes() - bytes;
+
+		start = System.nanoTime();
+		evaluations = incremental(games, candidates, evaluators, rounds);
+		double incrementalRate = evaluations / ((System.nanoTime() - start) / 1e9);
+
+		System.out.printf("evaluations: %d%n", evaluations);
+		System.out.printf("full evaluations/s: %.0f%n", fullRate);
+		System.out.printf("incremental evaluations/s: %.0f%n", incrementalRate);
+		System.out.printf("speedup: %.1fx%n", incrementalRate / fullRate);
+		System.out.printf("full bytes/evaluation: %.0f%n", (double) bytes / evaluations);
+
+		estimates(games, rounds / 10);
+		start = System.nanoTime();
+		long nodes = estimates(games, rounds);
+		System.out.printf("estimating all candidates: %.0f ns/position%n",
+				(System.nanoTime() - start) / (double) nodes);
+	}
+
+	/**
+	 * Evaluates every child of every position by scanning the whole board.
+	 */
+	private static long full(Igra[] games, Bitboard[] candidates, int rounds) {
+		Evaluator evaluator = Evaluator.forThread();
+		long evaluations = 0;
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int i = 0; i < games.length; i++) {
+				Igra game = games[i];
+				for (int n = candidates[i].nextSetBit(0); n >= 0; n = candidates[i].nextSetBit(n + 1)) {
+					game.play(n);
+					sum += evaluator.evaluate(game, game.player());
+					game.undo();
+					evaluations++;
+				}
+			}
+		}
+		consume(sum);
+		return evaluations;
+	}
+
+	/**
+	 * Evaluates every child of every position by updating the lines through the
+	 * move.
+	 */
+	private static long incremental(Igra[] games, Bitboard[] candidates, LineEvaluator[] evaluators, int rounds) {
+		long evaluations = 0;
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int i = 0; i < games.length; i++) {
+				Igra game = games[i];
+				LineEvaluator evaluator = evaluators[i];
+				for (int n = candidates[i].nextSetBit(0); n >= 0; n = candidates[i].nextSetBit(n + 1)) {
+					game.play(n);
+					evaluator.update(n);
+					sum += evaluator.evaluate(game.player());
+					game.undo();
+					evaluator.update(n);
+					evaluations++;
+				}
+			}
+		}
+		consume(sum);
+		return evaluations;
+	}
+
+	/**
+	 * Estimates every candidate of every position, and returns the number of
+	 * positions.
+	 */
+	private static long estimates(Igra[] games, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (Igra game : games) {
+				Bitboard candidates = game.candidates();
+				for (int n = candidates.nextSetBit(0); n >= 0; n = candidates.nextSetBit(n + 1)) {
+					sum += estimate(game, Patterns.DEFAULT, n);
+				}
+			}
+		}
+		consume(sum);
+		return (long) rounds * games.length;
+	}
+
+	/**
+	 * Estimates how the evaluation changes from the point of view of the player on
+	 * the move if it plays @move, without playing it: only the four lines through
+	 * the move are scored, with and without it.
+	 */
+	private static int estimate(Igra game, Patterns patterns, int move) {
+		Layout layout = game.layout();
+		Player mover = game.player();
+		int change = 0;
+		for (int d = 0; d < layout.directions().length; d++) {
+			int l = layout.line(d, move);
+			if (l < 0)
+				continue;
+			int stone = 1 << layout.position(d, move);
+			int empties = game.emptyLine(l);
+			int length = layout.lineLength(l);
+			int own = game.line(mover, l);
+			int other = game.line(mover.next(), l);
+			change += patterns.score(own | stone, empties & ~stone, length) - patterns.score(own, empties, length);
+			change -= patterns.score(other, empties & ~stone, length) - patterns.score(other, empties, length);
+		}
+		return change;
+	}
+
+	private static Igra[] positions() {
+		Igra[] games = new Igra[SearchBenchmark.POSITIONS.length];
+		for (int i = 0; i < games.length; i++) {
+			games[i] = SearchBenchmark.position(SearchBenchmark.POSITIONS[i]);
+		}
+		return games;
+	}
+
+	/**
+	 * Keeps the JIT from dropping the evaluations as dead code.
+	 */
+	private static void consume(long sum) {
+		if (sum == Long.MIN_VALUE)
+			System.out.println(sum);
+	}
+}
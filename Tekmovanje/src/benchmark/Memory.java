@@ -0,0 +1,32 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measurements of memory shared by the benchmarks.
+ */
+
+final class Memory {
+
+	private Memory() {
+	}
+
+	/**
+	 * Bytes allocated by the current thread so far.
+	 */
+	static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Heap in use after garbage collection.
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
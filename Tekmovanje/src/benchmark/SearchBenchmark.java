@@ -0,0 +1,114 @@
+package benchmark;
+
+import java.awt.Color;
+
+import inteligenca.Inteligenca;
+import logika.Igra;
+import splosno.Koordinati;
+
+/**
+ * A headless benchmark of the search. It runs the computer player on a fixed
+ * set of positions and reports the number of visited nodes per second, the
+ * number of bytes allocated per node, the numbers of positions evaluated at the
+ * horizon (from the evaluation kept up to date by the search) and of candidates
+ * ordered per search, and the share of cutoffs made by the first move searched.
+ */
+
+public class SearchBenchmark {
+
+	/**
+	 * Positions are given as sequences of moves (x, y), black moves first.
+	 */
+	static final int[][][] POSITIONS = {
+			{ { 7, 7 }, { 8, 8 }, { 8, 7 } },
+			{ { 7, 7 }, { 7, 8 }, { 8, 6 }, { 6, 8 }, { 9, 5 } },
+			{ { 7, 7 }, { 8, 7 }, { 7, 8 }, { 8, 8 }, { 7, 6 }, { 8, 6 }, { 6, 9 } },
+			{ { 5, 5 }, { 6, 6 }, { 5, 6 }, { 6, 5 }, { 5, 7 }, { 5, 8 }, { 7, 7 }, { 4, 4 }, { 6, 8 } },
+			{ { 7, 7 }, { 6, 6 }, { 8, 8 }, { 9, 9 }, { 7, 8 }, { 7, 9 }, { 6, 8 }, { 5, 8 }, { 8, 6 },
+					{ 9, 5 } } };
+
+	/**
+	 * Searches are limited by depth only, so that the work is the same in every
+	 * run.
+	 */
+	static final int DEPTH = 4;
+
+	private static int depth = DEPTH;
+
+	/**
+	 * Numbers of searches, ordered candidates and evaluated positions, and the
+	 * time spent searching.
+	 */
+	private static long searches;
+	private static long time;
+	private static long estimated;
+	private static long evaluated;
+	private static long cutoffs;
+	private static long firstCutoffs;
+
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		depth = args.length > 1 ? Integer.parseInt(args[1]) : DEPTH;
+
+		// Warm up the JIT before measuring.
+		run(1);
+
+		searches = 0;
+		estimated = 0;
+		evaluated = 0;
+		cutoffs = 0;
+		firstCutoffs = 0;
+		time = 0;
+		long nodes = 0;
+		long bytes = Memory.allocatedBytes();
+
+		nodes += run(rounds);
+
+		bytes = Memory.allocatedBytes() - bytes;
+
+		System.out.printf("nodes: %d%n", nodes);
+		System.out.printf("time: %.1f ms%n", time / 1e6);
+		System.out.printf("nodes/s: %.0f%n", nodes / (time / 1e9));
+		System.out.printf("bytes/node: %.0f%n", (double) bytes / nodes);
+		System.out.printf("evaluated/search: %.0f, ordered candidates/search: %.0f%n", (double) evaluated / searches,
+				(double) estimated / searches);
+		System.out.printf("cutoffs on the first move: %.1f %% of %d%n", 100.0 * firstCutoffs / cutoffs, cutoffs);
+	}
+
+	/**
+	 * Searches every position @rounds times and returns the number of nodes.
+	 */
+	private static long run(int rounds) {
+		long nodes = 0;
+		for (int r = 0; r < rounds; r++) {
+			for (int[][] moves : POSITIONS) {
+				// Every search starts with an empty table, so that rounds are alike.
+				Inteligenca.table().clear();
+				Inteligenca bot = new Inteligenca("Benchmark", Color.BLACK);
+				bot.setLimits(depth, 0, 0);
+				Igra game = position(moves);
+				long start = System.nanoTime();
+				bot.calculate(game);
+				time += System.nanoTime() - start;
+				nodes += bot.nodes();
+				searches++;
+				estimated += bot.estimated();
+				evaluated += bot.evaluated();
+				cutoffs += bot.cutoffs();
+				firstCutoffs += bot.firstCutoffs();
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Builds a game from a sequence of moves.
+	 */
+	static Igra position(int[][] moves) {
+		Igra game = new Igra();
+		for (int[] move : moves) {
+			game.odigraj(new Koordinati(move[0], move[1]));
+		}
+		return game;
+	}
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.awt.Color;
+import java.util.HashSet;
+import java.util.Set;
+
+import inteligenca.Inteligenca;
+import logika.Igra;
+import logika.Igra.GameState;
+
+/**
+ * Measures how much symmetry-canonical hashing helps caches. We play a number of
+ * games of the computer against itself and count how many of the positions
+ * reached were already seen before, once keyed by the plain hash and once keyed
+ * by the canonical hash.
+ */
+
+public class SymmetryBenchmark {
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+		Set<Long> plain = new HashSet<Long>();
+		Set<Long> canonical = new HashSet<Long>();
+		int positions = 0;
+		int plainHits = 0;
+		int canonicalHits = 0;
+
+		Inteligenca bot = new Inteligenca("Benchmark", Color.BLACK);
+		bot.setLimits(SearchBenchmark.DEPTH, 0, 0);
+		for (int i = 0; i < games; i++) {
+			Igra game = new Igra();
+			while (game.state() == GameState.IN_PROGRESS) {
+				game.play(bot.calculate(game));
+
+				positions++;
+				if (!plain.add(game.hash()))
+					plainHits++;
+				if (!canonical.add(game.canonicalHash()))
+					canonicalHits++;
+			}
+		}
+
+		System.out.printf("games: %d, positions: %d%n", games, positions);
+		System.out.printf("plain hash hit rate: %.1f %%%n", 100.0 * plainHits / positions);
+		System.out.printf("canonical hash hit rate: %.1f %%%n", 100.0 * canonicalHits / positions);
+	}
+}
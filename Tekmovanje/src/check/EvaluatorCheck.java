@@ -0,0 +1,101 @@
+package check;
+
+import java.util.SplittableRandom;
+
+import inteligenca.Evaluator;
+import inteligenca.LineEvaluator;
+import inteligenca.Patterns;
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+
+/**
+ * Checks that Evaluator and LineEvaluator agree on patterns with ? on the
+ * edges of the board. Stones are only placed on fields whose diagonals are long
+ * enough to hold five, since LineEvaluator skips the shorter ones (see its
+ * documentation), and mostly on the edges.
+ *
+ * Exits with status 1 if the evaluators disagree on any position.
+ */
+
+public class EvaluatorCheck {
+
+	/**
+	 * Patterns with ? at the start, in the middle and at the end. Weights are
+	 * powers of two, so that a sum tells which patterns matched.
+	 */
+	static final Patterns PATTERNS = new Patterns(new String[] { "?XX", "X?X", "XX?", "?X_X", "_X?", "??X_" },
+			new int[] { 1, 2, 4, 8, 16, 32 });
+
+	public static void main(String[] args) {
+		int positions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int failures = 0;
+
+		// Two stones at the start of a row and on the first row of the board.
+		failures += check(position(new int[][] { { 0, 4 }, { 7, 7 }, { 1, 4 } }));
+		failures += check(position(new int[][] { { 4, 0 }, { 7, 7 }, { 5, 0 } }));
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int i = 0; i < positions; i++) {
+			failures += check(random(rand));
+		}
+
+		System.out.printf("positions: %d, failures: %d%n", positions + 2, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Compares the evaluators on the @game for both players, and returns 1 if they
+	 * differ.
+	 */
+	private static int check(Igra game) {
+		Evaluator evaluator = new Evaluator(PATTERNS);
+		LineEvaluator lines = new LineEvaluator(game, PATTERNS);
+		for (Player player : Player.values()) {
+			int full = evaluator.evaluate(game, player);
+			int incremental = lines.evaluate(player);
+			if (full != incremental) {
+				System.out.printf("%s: Evaluator %d, LineEvaluator %d after %d moves%n", player, full, incremental,
+						game.moves());
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Builds a game from a sequence of moves (x, y).
+	 */
+	private static Igra position(int[][] moves) {
+		Igra game = new Igra();
+		for (int[] move : moves) {
+			game.play(game.index(move[0], move[1]));
+		}
+		return game;
+	}
+
+	/**
+	 * Plays a random game of a few moves, mostly on the edges.
+	 */
+	private static Igra random(SplittableRandom rand) {
+		Igra game = new Igra();
+		int size = game.size();
+		int moves = 2 + rand.nextInt(20);
+		while (game.moves() < moves && game.state() == GameState.IN_PROGRESS) {
+			int x = rand.nextInt(size);
+			int y = rand.nextInt(size);
+			if (rand.nextBoolean()) {
+				// Snap to the nearest edge.
+				if (Math.min(x, size - 1 - x) < Math.min(y, size - 1 - y))
+					x = (x < size / 2) ? 0 : size - 1;
+				else
+					y = (y < size / 2) ? 0 : size - 1;
+			}
+			boolean diagonals = size - Math.abs(x - y) >= 5 && size - Math.abs(x + y - (size - 1)) >= 5;
+			if (diagonals && game.isValidMove(game.index(x, y)))
+				game.play(game.index(x, y));
+		}
+		return game;
+	}
+}
@@ -0,0 +1,117 @@
+package check;
+
+import java.util.SplittableRandom;
+
+import logika.Igra;
+import logika.Igra.Field;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+import logika.Layout;
+
+/**
+ * Checks that the line encodings of Igra match the board: after every move
+ * played and taken back in random games on 15x15 and 19x19 boards, bit k of
+ * line() and emptyLine() has to tell what is on the k-th field of the line, and
+ * there must be no bits past the end of a line. It also checks that the lines
+ * of the Layout cover every field once in every direction.
+ *
+ * Exits with status 1 if any position differs.
+ */
+
+public class LineCheck {
+
+	/**
+	 * Sizes of the boards to check on.
+	 */
+	private static final int[] SIZES = { 15, 19 };
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		int positions = 0;
+		int failures = 0;
+
+		for (int size : SIZES) {
+			String failure = check(Layout.of(size));
+			if (failure != null) {
+				System.out.printf("%dx%d: %s%n", size, size, failure);
+				failures++;
+			}
+		}
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int g = 0; g < games; g++) {
+			int size = SIZES[g % SIZES.length];
+			Igra game = new Igra(Player.Black, size);
+			int length = 30 + rand.nextInt(size * size);
+			for (int i = 0; i < length; i++) {
+				if (game.moves() > 0 && (game.state() != GameState.IN_PROGRESS || rand.nextInt(3) == 0))
+					game.undo();
+				else if (game.state() == GameState.IN_PROGRESS)
+					game.play(UndoCheck.random(game, rand));
+				positions++;
+				String failure = check(game);
+				if (failure != null) {
+					System.out.printf("%dx%d: %s after %d moves%n", size, size, failure, game.moves());
+					failures++;
+					break;
+				}
+			}
+		}
+
+		System.out.printf("positions: %d, failures: %d%n", positions, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Returns where the lines of the @layout do not match its fields, or null:
+	 * the field at the position of a field on its line has to be the field
+	 * itself, and every line has to be as long as the number of its fields.
+	 */
+	private static String check(Layout layout) {
+		int[] fields = new int[layout.lines()];
+		for (int n = 0; n < layout.bits(); n++) {
+			if (!layout.isField(n))
+				continue;
+			for (int d = 0; d < layout.directions().length; d++) {
+				int l = layout.line(d, n);
+				if (l < 0)
+					continue;
+				if (layout.lineDirection(l) != d || layout.lineField(l, layout.position(d, n)) != n)
+					return "field " + n + " is not where its line " + l + " puts it";
+				fields[l]++;
+			}
+		}
+		for (int l = 0; l < fields.length; l++) {
+			if (fields[l] != layout.lineLength(l))
+				return "line " + l + " has " + fields[l] + " fields, not " + layout.lineLength(l);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the first line of the @game whose encoding does not match the
+	 * board, or null.
+	 */
+	private static String check(Igra game) {
+		Layout layout = game.layout();
+		for (int l = 0; l < layout.lines(); l++) {
+			int blacks = 0;
+			int whites = 0;
+			int empties = 0;
+			for (int k = 0; k < layout.lineLength(l); k++) {
+				Field field = game.field(layout.lineField(l, k));
+				if (field == Field.Black)
+					blacks |= 1 << k;
+				else if (field == Field.White)
+					whites |= 1 << k;
+				else
+					empties |= 1 << k;
+			}
+			if (game.line(Player.Black, l) != blacks || game.line(Player.White, l) != whites
+					|| game.emptyLine(l) != empties)
+				return "line " + l;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,126 @@
+package check;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+import logika.Snapshot;
+
+/**
+ * Checks that snapshots round-trip: after every move of random games on 15x15
+ * and 19x19 boards, the snapshot of the game has to survive Snapshot.toGame()
+ * (with the same stones, hash, candidates and state) and write() and read().
+ * It also checks that read() rejects every kind of malformed input: a size or
+ * player that does not exist, a field with stones of both players, bits past
+ * the last field, numbers of stones that do not match the player on the move,
+ * and a hash of another position.
+ *
+ * Exits with status 1 if any position fails.
+ */
+
+public class SnapshotCheck {
+
+	/**
+	 * Offsets in the binary form: the size, the player, the hash and the fields.
+	 */
+	private static final int SIZE = 0;
+	private static final int PLAYER = 1;
+	private static final int HASH = 2;
+	private static final int FIELDS = 10;
+
+	public static void main(String[] args) throws IOException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int positions = 0;
+		int failures = 0;
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int g = 0; g < games; g++) {
+			int size = (g % 2 == 0) ? 15 : 19;
+			Igra game = new Igra((g % 4 < 2) ? Player.Black : Player.White, size);
+			while (game.state() == GameState.IN_PROGRESS) {
+				game.play(UndoCheck.random(game, rand));
+				positions++;
+				String failure = check(game);
+				if (failure != null) {
+					System.out.printf("%dx%d: %s after %d moves%n", size, size, failure, game.moves());
+					failures++;
+					break;
+				}
+			}
+		}
+
+		System.out.printf("positions: %d, failures: %d%n", positions, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Round-trips the snapshot of the @game and corrupts it in every way read()
+	 * has to reject, and returns what failed, or null.
+	 */
+	private static String check(Igra game) throws IOException {
+		Snapshot snapshot = game.snapshot();
+		Igra copy = snapshot.toGame();
+		if (!copy.snapshot().equals(snapshot))
+			return "toGame() changed the snapshot";
+		if (copy.hash() != game.hash() || copy.canonicalHash() != game.canonicalHash())
+			return "toGame() changed the hash";
+		if (!copy.candidates().equals(game.candidates()) || copy.state() != game.state())
+			return "toGame() changed the candidates or the state";
+
+		byte[] bytes = bytes(snapshot);
+		if (!read(bytes).equals(snapshot))
+			return "read() changed the snapshot";
+
+		int size = game.size();
+		int last = FIELDS + 8 * ((2 * size * size + 63) >>> 6) - 1;
+		if (!rejected(bytes, SIZE, 4) || !rejected(bytes, SIZE, 33) || !rejected(bytes, PLAYER, 2))
+			return "read() accepted a wrong size or player";
+		// The hash is stored with the highest byte first.
+		if (!rejected(bytes, HASH + 7, bytes[HASH + 7] ^ 1))
+			return "read() accepted a wrong hash";
+		// Stones are stored with the lowest field in the lowest bit of the last
+		// byte of a word. Both bits of the first field.
+		if (!rejected(bytes, FIELDS + 7, bytes[FIELDS + 7] | 3))
+			return "read() accepted a field with stones of both players";
+		// The highest bit of the last word is past the last field of both sizes.
+		if (!rejected(bytes, last - 7, bytes[last - 7] | 0x80))
+			return "read() accepted bits past the last field";
+		// Turning the player on the move alone breaks the numbers of stones or the
+		// hash.
+		if (!rejected(bytes, PLAYER, bytes[PLAYER] ^ 1))
+			return "read() accepted the other player on the move";
+		return null;
+	}
+
+	/**
+	 * Tells whether read() rejects the @bytes with the byte at @offset set to
+	 * @value.
+	 */
+	private static boolean rejected(byte[] bytes, int offset, int value) {
+		byte[] corrupt = bytes.clone();
+		corrupt[offset] = (byte) value;
+		try {
+			read(corrupt);
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	private static byte[] bytes(Snapshot snapshot) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		snapshot.write(new DataOutputStream(out));
+		return out.toByteArray();
+	}
+
+	private static Snapshot read(byte[] bytes) throws IOException {
+		return Snapshot.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+}
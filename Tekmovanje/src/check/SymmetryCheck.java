@@ -0,0 +1,128 @@
+package check;
+
+import java.util.SplittableRandom;
+
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * Checks that canonical hashes do not depend on rotations and reflections:
+ * random games on 15x15 and 19x19 boards are played in all 8 symmetric
+ * variants at once (each move transformed by Layout.transform()), with moves
+ * taken back now and then, and after each of them all variants must have the
+ * same canonical hash. Their stones, mapped by canonicalTransform(), must also
+ * be the same, since that is how moves are mapped to and from the canonical
+ * position. It also checks that inverse() undoes every symmetry.
+ *
+ * Exits with status 1 if any position differs.
+ */
+
+public class SymmetryCheck {
+
+	/**
+	 * Sizes of the boards to check on.
+	 */
+	private static final int[] SIZES = { 15, 19 };
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		int positions = 0;
+		int failures = 0;
+
+		for (int size : SIZES) {
+			String failure = check(Layout.of(size));
+			if (failure != null) {
+				System.out.printf("%dx%d: %s%n", size, size, failure);
+				failures++;
+			}
+		}
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int g = 0; g < games; g++) {
+			int size = SIZES[g % SIZES.length];
+			Layout layout = Layout.of(size);
+			Igra[] variants = new Igra[Layout.SYMMETRIES];
+			for (int t = 0; t < variants.length; t++) {
+				variants[t] = new Igra(Player.Black, size);
+			}
+			int length = 20 + rand.nextInt(80);
+			for (int i = 0; i < length; i++) {
+				Igra game = variants[0];
+				boolean undo = game.moves() > 0 && (game.state() != GameState.IN_PROGRESS || rand.nextInt(4) == 0);
+				if (!undo && game.state() != GameState.IN_PROGRESS)
+					break;
+				int move = undo ? -1 : UndoCheck.random(game, rand);
+				for (int t = 0; t < variants.length; t++) {
+					if (undo)
+						variants[t].undo();
+					else
+						variants[t].play(layout.transform(t, move));
+				}
+				positions++;
+				String failure = check(variants);
+				if (failure != null) {
+					System.out.printf("%dx%d: %s after %d moves%n", size, size, failure, game.moves());
+					failures++;
+					break;
+				}
+			}
+		}
+
+		System.out.printf("positions: %d, failures: %d%n", positions, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Returns the first symmetry of the @layout that inverse() does not undo, or
+	 * null.
+	 */
+	private static String check(Layout layout) {
+		for (int t = 0; t < Layout.SYMMETRIES; t++) {
+			for (int n = 0; n < layout.bits(); n++) {
+				if (layout.isField(n) && layout.transform(layout.inverse(t), layout.transform(t, n)) != n)
+					return "inverse of symmetry " + t + " does not undo it at " + n;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compares the canonical hashes and positions of the symmetric @variants, and
+	 * returns the first one that differs from the first, or null.
+	 */
+	private static String check(Igra[] variants) {
+		Bitboard[] canonical = canonical(variants[0]);
+		for (int t = 1; t < variants.length; t++) {
+			if (variants[t].canonicalHash() != variants[0].canonicalHash())
+				return "canonical hash of symmetry " + t;
+			Bitboard[] stones = canonical(variants[t]);
+			for (Player player : Player.ALL) {
+				if (!stones[player.ordinal()].equals(canonical[player.ordinal()]))
+					return "canonical " + player + " stones of symmetry " + t;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the stones of each player of the @game, mapped to the canonical
+	 * position by canonicalTransform().
+	 */
+	private static Bitboard[] canonical(Igra game) {
+		Layout layout = game.layout();
+		int t = game.canonicalTransform();
+		Bitboard[] stones = new Bitboard[Player.ALL.length];
+		for (Player player : Player.ALL) {
+			Bitboard board = game.getBoard(player);
+			stones[player.ordinal()] = new Bitboard(layout.bits());
+			for (int n = board.nextSetBit(0); n >= 0; n = board.nextSetBit(n + 1)) {
+				stones[player.ordinal()].set(layout.transform(t, n));
+			}
+		}
+		return stones;
+	}
+}
@@ -0,0 +1,127 @@
+package check;
+
+import java.util.SplittableRandom;
+
+import inteligenca.Threats;
+import inteligenca.Threats.Type;
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * Checks that Threats stays up to date: after random sequences of moves played
+ * and undone, with update() called after each of them, the threats have to be
+ * the same as the ones found from scratch on the same board. The gains of fours
+ * also have to be exactly the fields where a player makes five, since
+ * MovePicker finds wins and forced blocks by them.
+ *
+ * Exits with status 1 if any position differs.
+ */
+
+public class ThreatsCheck {
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int positions = 0;
+		int failures = 0;
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int g = 0; g < games; g++) {
+			Igra game = new Igra();
+			Threats threats = new Threats(game);
+			int moves = 10 + rand.nextInt(80);
+			for (int i = 0; i < moves && game.state() == GameState.IN_PROGRESS; i++) {
+				if (game.moves() > 0 && rand.nextInt(4) == 0) {
+					// Take back up to three moves.
+					for (int u = 1 + rand.nextInt(3); u > 0 && game.moves() > 0; u--) {
+						int move = game.lastMove();
+						game.undo();
+						threats.update(move);
+					}
+				} else {
+					int move = random(game, rand);
+					game.play(move);
+					threats.update(move);
+				}
+				positions++;
+				failures += check(game, threats);
+			}
+		}
+
+		System.out.printf("positions: %d, failures: %d%n", positions, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Compares the @threats kept up to date with the ones found from scratch and
+	 * with the fives on the board, and returns 1 if they differ.
+	 */
+	private static int check(Igra game, Threats threats) {
+		Threats fresh = new Threats(game);
+		int bits = game.layout().bits();
+		for (Player player : Player.values()) {
+			for (Type type : Type.values()) {
+				if (threats.count(player, type) != fresh.count(player, type)
+						|| !threats.gains(player, type, new Bitboard(bits))
+								.equals(fresh.gains(player, type, new Bitboard(bits)))
+						|| !threats.defences(player, type, new Bitboard(bits))
+								.equals(fresh.defences(player, type, new Bitboard(bits)))) {
+					System.out.printf("%s %s: threats differ from a rebuild after %d moves%n", player, type,
+							game.moves());
+					return 1;
+				}
+			}
+		}
+
+		// Fives are only looked for while nobody has made one.
+		if (game.state() != GameState.IN_PROGRESS)
+			return 0;
+		for (Player player : Player.values()) {
+			Bitboard fives = threats.gains(player, Type.STRAIGHT_FOUR, new Bitboard(bits))
+					.or(threats.gains(player, Type.FOUR, new Bitboard(bits)));
+			for (int n = 0; n < bits; n++) {
+				if (game.isValidMove(n) && fives.get(n) != completesFive(game, player, n)) {
+					System.out.printf("%s: gains of fours differ from fives at %d after %d moves%n", player, n,
+							game.moves());
+					return 1;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Tells whether the @player makes five (or more) in a row by playing @move,
+	 * from the lines of the @game.
+	 */
+	private static boolean completesFive(Igra game, Player player, int move) {
+		Layout layout = game.layout();
+		for (int d = 0; d < layout.directions().length; d++) {
+			int l = layout.line(d, move);
+			if (l < 0)
+				continue;
+			int stones = game.line(player, l) | 1 << layout.position(d, move);
+			if ((stones & stones >>> 1 & stones >>> 2 & stones >>> 3 & stones >>> 4) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a random empty field, mostly near the centre so that stones make
+	 * threats.
+	 */
+	private static int random(Igra game, SplittableRandom rand) {
+		int size = game.size();
+		int spread = rand.nextInt(4) == 0 ? size : Math.min(size, 9);
+		int offset = (size - spread) / 2;
+		while (true) {
+			int move = game.index(offset + rand.nextInt(spread), offset + rand.nextInt(spread));
+			if (game.isValidMove(move))
+				return move;
+		}
+	}
+}
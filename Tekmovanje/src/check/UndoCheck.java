@@ -0,0 +1,119 @@
+package check;
+
+import java.util.SplittableRandom;
+
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Igra.Player;
+
+/**
+ * Checks that Igra.undo() restores the previous position exactly: after random
+ * sequences of moves played and taken back, on boards of several sizes, the
+ * game has to be the same as one rebuilt from scratch by playing the moves that
+ * are left (see difference()).
+ *
+ * Exits with status 1 if any position differs.
+ */
+
+public class UndoCheck {
+
+	/**
+	 * Sizes of the boards to check on.
+	 */
+	private static final int[] SIZES = { 15, 19, 7 };
+
+	public static void main(String[] args) {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int undos = 0;
+		int failures = 0;
+
+		SplittableRandom rand = new SplittableRandom(1);
+		for (int g = 0; g < games; g++) {
+			int size = SIZES[g % SIZES.length];
+			Igra game = new Igra(Player.Black, size);
+			int[] moves = new int[size * size];
+			int length = 30 + rand.nextInt(size * size);
+			for (int i = 0; i < length; i++) {
+				if (game.moves() > 0 && (game.state() != GameState.IN_PROGRESS || rand.nextInt(3) == 0)) {
+					game.undo();
+					undos++;
+					String difference = difference(game, replay(size, moves, game.moves()));
+					if (difference != null) {
+						System.out.printf("%dx%d: %s after an undo to %d moves%n", size, size, difference,
+								game.moves());
+						failures++;
+						break;
+					}
+				} else if (game.state() == GameState.IN_PROGRESS) {
+					int move = random(game, rand);
+					moves[game.moves()] = move;
+					game.play(move);
+				}
+			}
+		}
+
+		System.out.printf("undos: %d, failures: %d%n", undos, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Returns what differs between the games @a and @b, or null if they are the
+	 * same: the stones, the lines, the hashes, the player on the move, the
+	 * candidates, the state and the moves.
+	 */
+	static String difference(Igra a, Igra b) {
+		if (a.size() != b.size())
+			return "size";
+		for (Player player : Player.ALL) {
+			if (!a.getBoard(player).equals(b.getBoard(player)))
+				return player + " stones";
+		}
+		if (!a.getEmpties().equals(b.getEmpties()))
+			return "empty fields";
+		for (int l = 0; l < a.layout().lines(); l++) {
+			if (a.line(Player.Black, l) != b.line(Player.Black, l)
+					|| a.line(Player.White, l) != b.line(Player.White, l) || a.emptyLine(l) != b.emptyLine(l))
+				return "line " + l;
+		}
+		if (a.hash() != b.hash())
+			return "hash";
+		if (a.canonicalHash() != b.canonicalHash() || a.canonicalTransform() != b.canonicalTransform())
+			return "canonical hash";
+		if (a.player() != b.player())
+			return "player";
+		if (!a.candidates().equals(b.candidates()))
+			return "candidates";
+		if (a.state() != b.state())
+			return "state";
+		if (a.moves() != b.moves() || a.lastMove() != b.lastMove())
+			return "moves";
+		return null;
+	}
+
+	/**
+	 * Plays the first @count @moves on a new board.
+	 */
+	private static Igra replay(int size, int[] moves, int count) {
+		Igra game = new Igra(Player.Black, size);
+		for (int i = 0; i < count; i++) {
+			game.play(moves[i]);
+		}
+		return game;
+	}
+
+	/**
+	 * Returns a random empty field, mostly near the centre so that games end, or
+	 * anywhere once the centre is full.
+	 */
+	static int random(Igra game, SplittableRandom rand) {
+		int size = game.size();
+		for (int attempt = 0;; attempt++) {
+			int spread = (attempt > 100 || rand.nextInt(4) == 0) ? size : Math.min(size, 9);
+			int offset = (size - spread) / 2;
+			int move = game.index(offset + rand.nextInt(spread), offset + rand.nextInt(spread));
+			if (game.isValidMove(move))
+				return move;
+		}
+	}
+}
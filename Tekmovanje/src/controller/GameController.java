@@ -1,5 +1,6 @@
 package controller;
 
+import inteligenca.Inteligenca;
 import logika.Igra;
 import logika.Igra.GameState;
 import logika.Igra.Field;
@@ -33,11 +34,11 @@ public class GameController implements ITurnController, IGameController {
 
 	// MARK: - Contructor
 
-	public GameController(IPlayer black, IPlayer white) {
+	public GameController(IPlayer black, IPlayer white, int size) {
 		this.black = black;
 		this.white = white;
 
-		this.game = new Igra();
+		this.game = new Igra(Igra.Player.Black, size);
 		this.view = new GameView(this);
 
 		// Start
@@ -88,6 +89,24 @@ public class GameController implements ITurnController, IGameController {
 		return this.game.size();
 	}
 
+	/**
+	 * Returns the index of the stone at (x, y).
+	 */
+	public int index(int x, int y) {
+		return this.game.index(x, y);
+	}
+
+	/**
+	 * Returns the coordinates of the stone at index n.
+	 */
+	public int x(int n) {
+		return this.game.x(n);
+	}
+
+	public int y(int n) {
+		return this.game.y(n);
+	}
+
 	/**
 	 * Returns the player that is currently on turn.
 	 */
@@ -159,6 +178,46 @@ public class GameController implements ITurnController, IGameController {
 		return successful;
 	}
 
+	/**
+	 * Takes back the last move. Moves of a computer opponent are taken back as
+	 * well, so that a human is on turn again. While the computer is thinking, its
+	 * move cannot be taken back, and when two computers play each other, no move
+	 * can be, since they would only play it again.
+	 * 
+	 * @return Whether a move was taken back.
+	 */
+	public boolean undo() {
+		if (this.black instanceof Inteligenca && this.white instanceof Inteligenca)
+			return false;
+		if (this.game.state() == GameState.IN_PROGRESS && this.onTurn() instanceof Inteligenca)
+			return false;
+
+		if (!this.game.undo())
+			return false;
+
+		while (this.onTurn() instanceof Inteligenca && this.game.moves() > 0) {
+			this.game.undo();
+		}
+
+		// Reset the view.
+		this.active = null;
+		this.view.update();
+
+		// Start the turn again.
+		this.tick();
+
+		return true;
+	}
+
+	/**
+	 * Returns the player that is on turn.
+	 */
+	private IPlayer onTurn() {
+		if (this.game.player() == Igra.Player.Black)
+			return this.black;
+		return this.white;
+	}
+
 	@Override
 	/**
 	 * Returns the game state.
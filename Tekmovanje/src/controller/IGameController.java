@@ -47,6 +47,25 @@ public interface IGameController {
 	 */
 	public int size();
 	
+	/**
+	 * Returns the index of the stone at (x, y).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int index(int x, int y);
+	
+	/**
+	 * Returns the coordinates of the stone at index n.
+	 * 
+	 * @param n
+	 * @return
+	 */
+	public int x(int n);
+	
+	public int y(int n);
+	
 	/**
 	 * Returns the state of the game.
 	 */
@@ -55,7 +55,7 @@ public class WindowController implements IGameSettingsController {
 		IPlayer black = this.player(settings.black);
 
 		// Construct a game.
-		this.game = new GameController(black, white);
+		this.game = new GameController(black, white, settings.size);
 		IGameView view = this.game.view();
 
 		// Add event listeners.
@@ -86,6 +86,16 @@ public class WindowController implements IGameSettingsController {
 
 	// MARK: - Methods
 
+	/**
+	 * Takes back the last move of the current game.
+	 */
+	public void undo() {
+		if (this.game == null)
+			return;
+
+		this.game.undo();
+	}
+
 	/**
 	 * Presents the window on the screen.
 	 */
@@ -8,6 +8,7 @@ import java.awt.event.MouseMotionListener;
 
 import controller.ITurnController;
 import controller.IPlayer;
+import logika.Igra;
 
 public class Clovek implements IPlayer, MouseListener, MouseMotionListener {
 
@@ -89,7 +90,12 @@ public class Clovek implements IPlayer, MouseListener, MouseMotionListener {
 		this.controller.setActive(null);
 
 		// Stones
-		for (int n : this.controller.game().validMoves()) {
+		Igra game = this.controller.game();
+		int fields = game.layout().bits();
+		for (int n = 0; n < fields; n++) {
+			if (!game.isValidMove(n))
+				continue;
+
 			Point coord = this.controller.view().point(n);
 
 			if (d(coord.x, coord.y, x, y) < 10) {
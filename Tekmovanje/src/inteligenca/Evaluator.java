@@ -0,0 +1,208 @@
+package inteligenca;
+
+import java.util.Arrays;
+
+import logika.Igra;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * A class that provides static evaluation of a given position by scanning the
+ * whole board. The search uses the incremental LineEvaluator, this class serves
+ * as a reference and for positions outside of a search.
+ *
+ * Patterns (see Patterns) are searched for by shifting bitboards: for each
+ * direction, the empty fields and the stones of both players are shifted by
+ * every offset within a window once, and each pattern is the intersection of
+ * some of those boards, counted word by word (see Bitboard.countAll). Thanks
+ * to the padding in the layout of the board, stones and empty fields found by
+ * shifting never wrap around the edge. Only a ? inside a pattern, which may be
+ * any field, needs a mask of the fields of the board.
+ *
+ * An Evaluator holds no maps and allocates nothing once its boards are sized
+ * for a layout, so it is meant to be reused, one per thread (see forThread()).
+ */
+
+public class Evaluator {
+
+	// MARK: - Static
+
+	/**
+	 * Scores for patterns. The values are purely speculative; tuned weights can
+	 * be loaded instead, see Patterns.DEFAULT.
+	 */
+	static final int LIVE_FOUR = 10000;
+	static final int DEAD_FOUR = 7000;
+	static final int OPEN_THREE = 5000;
+	static final int BROKEN_THREE = 5000;
+	static final int CLOSED_THREE = 1000;
+	static final int TWO = 10;
+
+	/**
+	 * Evaluators with the default patterns, one per thread.
+	 */
+	private static final ThreadLocal<Evaluator> evaluators = ThreadLocal.withInitial(Evaluator::new);
+
+	/**
+	 * Returns the evaluator of the current thread.
+	 *
+	 * @return
+	 */
+	public static Evaluator forThread() {
+		return evaluators.get();
+	}
+
+	// MARK: - Properties
+
+	private final Patterns patterns;
+
+	/**
+	 * The layout the boards are sized for.
+	 */
+	private Layout layout;
+
+	/**
+	 * The empty fields and the stones shifted by each offset within a window, i.e.
+	 * the n-th bit of the k-th board is the field k steps after the n-th one in
+	 * the current direction.
+	 */
+	private Bitboard[] empties;
+	private Bitboard[] stones;
+
+	/**
+	 * The fields of the board shifted the same way, for each direction, and the
+	 * ones of the current direction. A ? inside a pattern has to be a field, not
+	 * the padding between rows.
+	 */
+	private Bitboard[][] fields;
+	private Bitboard[] current;
+
+	// MARK: - Constructor
+
+	public Evaluator() {
+		this(Patterns.DEFAULT);
+	}
+
+	public Evaluator(Patterns patterns) {
+		this.patterns = patterns;
+	}
+
+	// MARK: - Evaluation
+
+	/**
+	 * The holistic evaluation of the board. If the return value is positive, the
+	 * position is favorable for the @player and vice versa. Both players are
+	 * scored in the same pass over the directions.
+	 *
+	 * @param game
+	 * @param player
+	 * @return
+	 */
+	public int evaluate(Igra game, Player player) {
+		this.prepare(game.layout());
+
+		int plus = 0;
+		int minus = 0;
+		for (int d = 0; d < this.layout.directions().length; d++) {
+			int direction = this.layout.directions()[d];
+			this.current = this.fields[d];
+			// Empty fields are shared by both players.
+			this.shift(game.getEmpties(), this.empties, direction);
+			for (Player stones : Player.ALL) {
+				this.shift(game.getBoard(stones), this.stones, direction);
+				int score = this.score();
+				if (stones == player)
+					plus += score;
+				else
+					minus += score;
+			}
+		}
+
+		return plus - minus;
+	}
+
+	/**
+	 * Counts the matches of each pattern of the @player minus those of the
+	 * opponent, and stores them in @into (one entry per pattern). The evaluation
+	 * is the sum of these counts multiplied by the weights of the patterns, so
+	 * the counts are the features of a position when tuning the weights.
+	 *
+	 * @param game
+	 * @param player
+	 * @param into
+	 * @return @into
+	 */
+	public int[] counts(Igra game, Player player, int[] into) {
+		this.prepare(game.layout());
+		Arrays.fill(into, 0, this.patterns.size(), 0);
+
+		for (int d = 0; d < this.layout.directions().length; d++) {
+			int direction = this.layout.directions()[d];
+			this.current = this.fields[d];
+			this.shift(game.getEmpties(), this.empties, direction);
+			for (Player stones : Player.ALL) {
+				this.shift(game.getBoard(stones), this.stones, direction);
+				int sign = (stones == player) ? 1 : -1;
+				for (int i = 0; i < this.patterns.size(); i++) {
+					into[i] += sign * this.count(i);
+				}
+			}
+		}
+		return into;
+	}
+
+	/**
+	 * Sizes the boards for the @layout, unless they already are.
+	 */
+	private void prepare(Layout layout) {
+		if (this.layout == layout)
+			return;
+		this.layout = layout;
+		this.empties = new Bitboard[this.patterns.window()];
+		this.stones = new Bitboard[this.patterns.window()];
+		for (int k = 0; k < this.patterns.window(); k++) {
+			this.empties[k] = layout.board();
+			this.stones[k] = layout.board();
+		}
+		this.fields = new Bitboard[layout.directions().length][this.patterns.window()];
+		for (int d = 0; d < this.fields.length; d++) {
+			for (int k = 0; k < this.patterns.window(); k++) {
+				this.fields[d][k] = layout.board();
+			}
+			this.shift(layout.fields(), this.fields[d], layout.directions()[d]);
+		}
+	}
+
+	/**
+	 * Fills @shifts with the @board shifted by 0, 1, 2, ... steps in the
+	 * @direction.
+	 */
+	private void shift(Bitboard board, Bitboard[] shifts, int direction) {
+		shifts[0].copy(board);
+		for (int k = 1; k < shifts.length; k++) {
+			shifts[k].copy(shifts[k - 1]).shl(direction);
+		}
+	}
+
+	/**
+	 * Scores the patterns in the current direction, for the player whose stones
+	 * were last shifted.
+	 */
+	private int score() {
+		int score = 0;
+		for (int i = 0; i < this.patterns.size(); i++) {
+			score += this.count(i) * this.patterns.weight(i);
+		}
+		return score;
+	}
+
+	/**
+	 * Counts the matches of the i-th pattern in the current direction, for the
+	 * player whose stones were last shifted.
+	 */
+	private int count(int i) {
+		return Bitboard.countAll(this.stones, this.patterns.stones(i), this.empties, this.patterns.empties(i),
+				this.current, this.patterns.fields(i));
+	}
+}
@@ -1,18 +1,9 @@
 package inteligenca;
 
-import static util.Util.getMask;
-import static util.Util.shl;
-
 import java.awt.Color;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.BitSet;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import javax.swing.SwingWorker;
 
@@ -23,6 +14,7 @@ import logika.Igra.GameState;
 import logika.Igra.Player;
 import splosno.KdoIgra;
 import splosno.Koordinati;
+import util.Bitboard;
 
 /**
  * This file contains a class that plays by itself the Gomoku game.
@@ -33,40 +25,160 @@ public class Inteligenca extends KdoIgra implements IPlayer {
 	// MARK: - Static
 
 	/**
-	 * Scores for the game outcome.
+	 * Scores for the game outcome. They are far above any evaluation, so that no
+	 * position is taken for a won or lost game (see Patterns.MAX_RANGE).
 	 */
-	static final int WIN = 1000000;
+	static final int WIN = 1 << 30;
 	static final int LOSE = -WIN;
 	static final int DRAW = 0;
 
 	/**
-	 * A transposition table to store static evaluations of already seen positions.
-	 * 
-	 * This way we prevent evaluating the same position (at which one can arrive
-	 * with different sequences of moves) more than once. We need two transposition
-	 * tables, once for when computer is playing black and one for when it is
-	 * playing white.
+	 * Bounds of the window of the search, and the half-width of the aspiration
+	 * window around the score of the previous iteration.
+	 */
+	static final int INFINITY = Integer.MAX_VALUE;
+	static final int ASPIRATION = 500;
+
+	/**
+	 * A table of results of searches of already seen positions.
 	 * 
-	 * In a single game, a single table would suffice, since scores are always
-	 * calculated for the same player, however, the same Bot object is meant to be
-	 * used in several games (in order to accumulate as big transposition tables as
-	 * possible).
+	 * The same table is shared by all Bot objects, also in several games, and by
+	 * their workers, which may run at the same time. It is bounded, so memory
+	 * stays the same however long the program runs. Positions are keyed by their
+	 * canonical hash, so that rotated and reflected variants of a position share
+	 * an entry, and best moves are kept as moves of the canonical position.
+	 */
+	static private final TranspositionTable sharedTable = new TranspositionTable(
+			Integer.getInteger("gomoku.table.size", 1 << 20));
+
+	/**
+	 * Returns the table of results of searches shared by all computer players.
 	 * 
-	 * Calculations are deterministic, that's why we can share results between
-	 * iterations.
+	 * @return
 	 */
-	static private Map<Long, Integer> transpositionTableBlack = new HashMap<Long, Integer>();
-	static private Map<Long, Integer> transpositionTableWhite = new HashMap<Long, Integer>();
+	public static TranspositionTable table() {
+		return sharedTable;
+	}
+
+	/**
+	 * Default limits of a calculation: the number of plies of the deepest
+	 * iteration, the time in milliseconds and the number of nodes. A limit of
+	 * zero time or nodes means no limit.
+	 */
+	static final int DEPTH = Integer.getInteger("gomoku.depth", 32);
+	static final long TIME = Long.getLong("gomoku.time", 1000);
+	static final long NODES = Long.getLong("gomoku.nodes", 0);
+
+	/**
+	 * Every how many nodes the clock is read.
+	 */
+	private static final int CLOCK = 256;
 
 	// MARK: - State
 
 	private Color color;
 
+	/**
+	 * The table used by this player, the shared one unless given to the
+	 * constructor, and the source of random opening moves.
+	 */
+	private final TranspositionTable table;
+	private final Random random = new Random();
+
+	/**
+	 * Limits of a calculation, see setLimits().
+	 */
+	private int maxDepth = DEPTH;
+	private long timeLimit = TIME;
+	private long nodeLimit = NODES;
+
+	/**
+	 * The deadline of the current calculation (in System.nanoTime()) and whether
+	 * the current iteration ran out of time or nodes.
+	 */
+	private long deadline;
+	private boolean aborted;
+
+	/**
+	 * The number of plies of the deepest completed iteration of the last
+	 * calculation.
+	 */
+	private int depth;
+
+	/**
+	 * The depth of the root of the current iteration and the best move of the
+	 * previous one, which is searched first.
+	 */
+	private int root;
+	private int principal;
+
+	/**
+	 * The best move of the root found by the last search.
+	 */
+	private int rootMove;
+
+	/**
+	 * Number of nodes visited during the last calculation.
+	 */
+	private long nodes;
+
+	/**
+	 * Numbers of candidates ordered by their priorities and of positions
+	 * evaluated at the horizon or at the end of the game during the last
+	 * calculation.
+	 */
+	private long estimated;
+	private long evaluated;
+
+	/**
+	 * Evaluator and threats following the board of the current calculation.
+	 */
+	private LineEvaluator evaluator;
+	private Threats threats;
+
+	/**
+	 * Priorities of moves on the board of the current calculation, and pickers of
+	 * moves, one for each depth.
+	 */
+	private MovePriorities priorities;
+	private MovePicker[] pickers;
+
+	/**
+	 * Heuristics of move ordering, learned by the search: two killer moves of
+	 * each ply (moves that cut off elsewhere at the same ply), the history of
+	 * cutoffs of each field for each player, and the counter move of each player
+	 * to each move of the opponent. The history and the counter moves are kept
+	 * from one calculation to the next.
+	 */
+	private int[][] killers;
+	private int[][] history;
+	private int[][] counters;
+
+	/**
+	 * Numbers of cutoffs, and of cutoffs by the first move searched, during the
+	 * last calculation.
+	 */
+	private long cutoffs;
+	private long firstCutoffs;
+
 	// MARK: - Contructor
 
 	public Inteligenca(String ime, Color color) {
+		this(ime, color, sharedTable);
+	}
+
+	/**
+	 * Creates a player with its own @table. Players that share it also share what
+	 * they learn, so the moves of one depend on the searches of the others.
+	 * 
+	 * @param ime
+	 * @param color
+	 * @param table
+	 */
+	public Inteligenca(String ime, Color color, TranspositionTable table) {
 		super(ime);
 		this.color = color;
+		this.table = table;
 	}
 
 	// MARK: - Accessors
@@ -85,6 +197,80 @@ public class Inteligenca extends KdoIgra implements IPlayer {
 		return this.color;
 	}
 
+	/**
+	 * Returns the number of nodes visited during the last calculation.
+	 */
+	public long nodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * Returns the number of candidates that were ordered by their priorities
+	 * during the last calculation.
+	 */
+	public long estimated() {
+		return this.estimated;
+	}
+
+	/**
+	 * Returns the number of positions evaluated at the horizon or at the end of
+	 * the game during the last calculation.
+	 */
+	public long evaluated() {
+		return this.evaluated;
+	}
+
+	/**
+	 * Returns the number of cutoffs during the last calculation.
+	 */
+	public long cutoffs() {
+		return this.cutoffs;
+	}
+
+	/**
+	 * Returns the number of cutoffs by the first move searched during the last
+	 * calculation. The higher their share of all cutoffs, the better the moves
+	 * are ordered.
+	 */
+	public long firstCutoffs() {
+		return this.firstCutoffs;
+	}
+
+	/**
+	 * Returns the number of plies of the deepest iteration completed during the
+	 * last calculation.
+	 */
+	public int depth() {
+		return this.depth;
+	}
+
+	/**
+	 * Sets the limits of the calculation of a move. The search deepens one ply
+	 * at a time until it completes @depth plies, or until it runs out of the time
+	 * or nodes, and returns the best move of the deepest completed iteration.
+	 * 
+	 * @param depth  The number of plies of the deepest iteration.
+	 * @param millis The time for a move in milliseconds, or 0 for no limit.
+	 * @param nodes  The number of nodes for a move, or 0 for no limit.
+	 */
+	public void setLimits(int depth, long millis, long nodes) {
+		if (depth < 1)
+			throw new IllegalArgumentException("The search needs at least one ply.");
+		this.maxDepth = depth;
+		this.timeLimit = millis;
+		this.nodeLimit = nodes;
+	}
+
+	/**
+	 * Seeds the choice of random opening moves, so that calculations can be
+	 * repeated.
+	 * 
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		this.random.setSeed(seed);
+	}
+
 	// MARK: - Methods
 
 	/**
@@ -96,8 +282,8 @@ public class Inteligenca extends KdoIgra implements IPlayer {
 	Koordinati izberiPotezo(Igra igra) {
 		int n = this.calculate(igra);
 
-		int x = n % igra.size();
-		int y = n / igra.size();
+		int x = igra.x(n);
+		int y = igra.y(n);
 
 		return new Koordinati(x, y);
 	}
@@ -152,174 +338,302 @@ public class Inteligenca extends KdoIgra implements IPlayer {
 	 * Chooses the best move it can find using iterative deepening search.
 	 */
 	public int calculate(Igra game) {
+		long start = System.nanoTime();
+		this.nodes = 0;
+		this.depth = 0;
+		this.estimated = 0;
+		this.evaluated = 0;
+		this.cutoffs = 0;
+		this.firstCutoffs = 0;
+
 		// Check that the gamestate is not terminal.
 		if (game.state() != GameState.IN_PROGRESS) {
 			throw new IllegalArgumentException("Position is terminal. I cannot choose a move!");
 		}
 
 		// If this is the first move, play at the center. Check that the move is valid.
-		if (game.getEmpties().cardinality() >= 224) {
-			Random rand = new Random();
-			int[] center = { 6 + 6 * 15, 7 + 6 * 15, 8 + 6 * 15, 6 + 7 * 15, 7 + 7 * 15, 8 + 7 * 15, 6 + 8 * 15,
-					7 + 8 * 15, 8 + 8 * 15 };
+		if (game.moves() <= 1) {
+			Random rand = this.random;
+			int middle = game.size() / 2;
 
 			while (true) {
-				int choice = center[rand.nextInt(center.length)];
+				int choice = game.index(middle - 1 + rand.nextInt(3), middle - 1 + rand.nextInt(3));
 				if (game.isValidMove(choice))
 					return choice;
 			}
 		}
 
-		// Perform calculation otherwise.
-		return minimaxAB(game, 3, -Integer.MAX_VALUE, Integer.MAX_VALUE, game.player()).move();
+		// Perform calculation otherwise. The search plays and takes back moves on its
+		// own copy of the game, so that the game on the screen stays untouched.
+		Igra board = new Igra(game);
+		this.evaluator = new LineEvaluator(board);
+		this.threats = new Threats(board);
+		this.priorities = new MovePriorities(board);
+		this.pickers = new MovePicker[this.maxDepth];
+		for (int d = 0; d < this.pickers.length; d++) {
+			this.pickers[d] = new MovePicker(board, this.threats, this.priorities);
+		}
+		this.deadline = (this.timeLimit > 0) ? start + this.timeLimit * 1000000 : Long.MAX_VALUE;
+		this.aborted = false;
+		this.principal = -1;
+		this.table.age();
+
+		// Killers belong to a position, but the history and counter moves are kept,
+		// with older cutoffs counting less.
+		this.killers = new int[this.maxDepth][2];
+		for (int[] killer : this.killers) {
+			Arrays.fill(killer, -1);
+		}
+		if (this.history == null || this.history[0].length != board.layout().bits()) {
+			this.history = new int[Player.values().length][board.layout().bits()];
+			this.counters = new int[Player.values().length][board.layout().bits()];
+			for (int[] counter : this.counters) {
+				Arrays.fill(counter, -1);
+			}
+		}
+		for (int[] fields : this.history) {
+			for (int n = 0; n < fields.length; n++) {
+				fields[n] >>= 1;
+			}
+		}
+
+		// Iterative deepening: every iteration searches one ply deeper, starting with
+		// the best move of the previous one. The first iteration always completes, so
+		// that there is a move to return. An iteration that runs out of time or nodes
+		// is discarded, since its moves were not all searched.
+		int best = -1;
+		int score = 0;
+		for (int plies = 1; plies <= this.maxDepth; plies++) {
+			this.root = plies - 1;
+			int result = this.aspiration(board, score, plies > 1);
+			if (this.aborted)
+				break;
+
+			best = this.rootMove;
+			score = result;
+			this.depth = plies;
+			this.principal = best;
+
+			// A won or lost game does not get any better deeper.
+			if (score >= WIN || score <= LOSE)
+				break;
+		}
+
+		for (MovePicker picker : this.pickers) {
+			this.estimated += picker.estimated();
+		}
+		return best;
 	}
 
 	/**
-	 * Minimax with alpha-beta pruning to cut off unreachable branches. At each
-	 * step, candidates for next move are first evaluated and sorted. This should
-	 * speed up the algorithm significantly.
-	 * 
-	 * @param game
-	 * @param depth  It is a depth-bounded algorithm
-	 * @param alpha  To be initialized as negative infinity
-	 * @param beta   To be initialized as positive infinity
-	 * @param player Whether it is a minimizing or a maximizing branch. To be
-	 *               initialized as game.toplay()
-	 * @return An evaluated move containing the play and its score.
+	 * Searches the root within a window around the @guess, the score of the
+	 * previous iteration. A narrow window cuts off more, but if the score falls
+	 * outside of it, the root has to be searched again with the window widened on
+	 * that side.
 	 */
-	private EvaluatedMove minimaxAB(Igra game, int depth, Integer alpha, Integer beta, Player player) {
-
-		// Get the relevant transposition table.
-		Map<Long, Integer> transpositionTable;
-
-		if (player == Player.Black)
-			transpositionTable = transpositionTableBlack;
-		else
-			transpositionTable = transpositionTableWhite;
-
-		// If @player is the maximizer, the starting maxEval is negative "infinity",
-		// and if @player is the minimizer, the starting maxEval is "negative infinity".
-		Integer maxEval = (game.player() == player) ? -Integer.MAX_VALUE : Integer.MAX_VALUE;
-
-		// A map for storing the evaluations of plays.
-		// Play is the key, evaluation is the value.
-		Map<Integer, Integer> evaluations = new HashMap<Integer, Integer>();
-
-		// Games are stored in a map to avoid copying each game twice.
-		Map<Integer, Igra> clonedGames = new HashMap<Integer, Igra>();
-
-		// Evaluate moves that are close to stones on the board.
-		Set<Integer> candidates = game.candidates();
-
-		for (int move : candidates) {
-			Igra copy = new Igra(game);
-			copy.play(move);
-
-			// Try to fetch the cache of the evaluation.
-			Integer staticEvaluation = transpositionTable.get(copy.hash());
-
-			// If there's no evaluation yet, create a new evaluation for this game.
-			if (staticEvaluation == null) {
-				GameState state = copy.state();
-
-				staticEvaluation = switch (state.outcome(player)) {
-				case WIN -> WIN;
-				case DRAW -> DRAW;
-				case LOSE -> LOSE;
-				case IN_PROGRESS -> new Evaluator(copy).evaluate(player);
-				};
-
-				// Cache
-				transpositionTable.put(copy.hash(), staticEvaluation);
-			}
-
-			// Store the cloned game and the evaluation of child node.
-			clonedGames.put(move, copy);
-			evaluations.put(move, staticEvaluation);
+	private int aspiration(Igra game, int guess, boolean narrow) {
+		if (!narrow)
+			return this.negamax(game, this.root, -INFINITY, INFINITY);
+
+		int delta = ASPIRATION;
+		int alpha = Math.max(-INFINITY, guess - delta);
+		int beta = Math.min(INFINITY, guess + delta);
+		while (true) {
+			int score = this.negamax(game, this.root, alpha, beta);
+			if (this.aborted)
+				return score;
+			if (score <= alpha && alpha > -INFINITY)
+				alpha = (delta < WIN) ? Math.max(-INFINITY, score - delta) : -INFINITY;
+			else if (score >= beta && beta < INFINITY)
+				beta = (delta < WIN) ? Math.min(INFINITY, score + delta) : INFINITY;
+			else
+				return score;
+			// Once a side is unbounded, the window grows no further, which also keeps
+			// the delta from overflowing.
+			if (delta < WIN)
+				delta *= 4;
 		}
+	}
 
-		List<Integer> sorted = new ArrayList<Integer>(candidates);
+	/**
+	 * Stops the current iteration if it ran out of time or nodes. The first
+	 * iteration is never stopped.
+	 */
+	private boolean outOfBudget() {
+		if (this.depth == 0)
+			return false;
+		if (this.nodeLimit > 0 && this.nodes >= this.nodeLimit)
+			this.aborted = true;
+		else if (this.nodes % CLOCK == 0 && System.nanoTime() >= this.deadline)
+			this.aborted = true;
+		return this.aborted;
+	}
 
-		// Sort the evaluations.
-		if (game.player() == player) {
-			sorted.sort((x, y) -> evaluations.get(y).compareTo(evaluations.get(x)));
-		} else {
-			sorted.sort((x, y) -> evaluations.get(x).compareTo(evaluations.get(y)));
+	/**
+	 * Negamax with alpha-beta pruning to cut off unreachable branches, searching
+	 * the principal variation: the first move (the best one, if the moves are
+	 * ordered well) is searched with the full window, and every other move only
+	 * with a null window, which just tells whether the move is better. Only moves
+	 * that are, are searched again with the full window. At each step, moves are
+	 * picked in stages (see MovePicker), so that a node that cuts off early does
+	 * not generate the rest of its moves. Children are visited by
+	 * playing and undoing moves on a single board, which is left as it was found.
+	 * The evaluator, the threats and the priorities are told about every such
+	 * move, so that they only have to look again at the lines through it.
+	 * 
+	 * The priorities of the candidates are kept up to date around every move and
+	 * equal the change of the evaluation. They order and prune the candidates,
+	 * and at the horizon they also evaluate the children: the evaluation of a
+	 * child is the current one changed by the priority of its move, so no child
+	 * is scored again after it is played, and there is nothing to cache. Only the
+	 * end of the game is detected after the move.
+	 * 
+	 * @param game
+	 * @param depth It is a depth-bounded algorithm
+	 * @param alpha To be initialized as negative infinity
+	 * @param beta  To be initialized as positive infinity
+	 * @return The score of the position from the point of view of the player on
+	 *         the move. The best move of the root is left in rootMove. If the
+	 *         iteration runs out of time or nodes, the search returns at once
+	 *         with 0, and learns nothing from the unfinished nodes.
+	 */
+	private int negamax(Igra game, int depth, int alpha, int beta) {
+		Player mover = game.player();
+		int low = alpha;
+
+		// If the position was already searched deep enough, its score may be known,
+		// or at least outside of the window. Otherwise, its best move is searched
+		// first. The root is always searched, since it needs all of its moves.
+		long key = game.canonicalHash();
+		int transform = game.canonicalTransform();
+		long entry = this.table.probe(key);
+		int hashMove = -1;
+		if (entry != TranspositionTable.NONE && TranspositionTable.move(entry) >= 0) {
+			hashMove = game.layout().transform(game.layout().inverse(transform), TranspositionTable.move(entry));
+			int score = TranspositionTable.score(entry);
+			int bound = TranspositionTable.bound(entry);
+			if (depth != this.root && TranspositionTable.depth(entry) >= depth
+					&& (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+							|| (bound == TranspositionTable.UPPER && score <= alpha)))
+				return score;
 		}
 
-		if (depth != 3) {
-			sorted = sorted.stream().limit(8).collect(Collectors.toList());
-		}
+		// Moves that are close to stones on the board are candidates. The best move
+		// of the previous iteration at the root, and elsewhere the best move from the
+		// table, is picked first. The others are picked with the highest priority for
+		// the player on the move first, and moves of the same priority by the
+		// heuristics: the killers of the ply, the counter move to the last move and
+		// the history.
+		int ply = this.root - depth;
+		int previous = game.lastMove();
+		int[] history = this.history[mover.ordinal()];
+		int counter = (previous >= 0) ? this.counters[mover.ordinal()][previous] : -1;
+		int first = (depth == this.root && this.principal >= 0) ? this.principal : hashMove;
+		MovePicker picker = this.pickers[depth];
+		picker.reset((depth != this.root) ? 8 : Integer.MAX_VALUE, first, this.killers[ply], counter, history);
+
+		// The evaluation after a move is the current one changed by its priority.
+		int current = this.evaluator.evaluate(mover);
 
 		// Starting with the best candidate we evaluate each move.
-		int bestMove = sorted.get(0);
-		for (int move : sorted) {
-
-			// Retrieve the cloned game
-			Igra clone = clonedGames.get(move);
-			Integer eval;
+		int bestEval = -INFINITY;
+		int bestMove = -1;
+		int i = 0;
+		for (int move = picker.next(); move >= 0; move = picker.next(), i++) {
+
+			// A move that makes five is the best move and there is nothing to search.
+			if (picker.winning()) {
+				bestEval = WIN;
+				bestMove = move;
+				break;
+			}
 
-			if (clone.state() != GameState.IN_PROGRESS || depth == 0) {
-				// If position is terminal or maximum depth was reached, retrieve evaluation
-				// from the cache.
-				eval = transpositionTable.get(clone.hash());
+			// The result of a stopped iteration is discarded, so there is no point in
+			// searching further. Its score means nothing, so it must not be taken for
+			// a cutoff or stored.
+			if (this.outOfBudget())
+				return 0;
+
+			game.play(move);
+			this.nodes++;
+			int eval;
+
+			if (game.state() != GameState.IN_PROGRESS || depth == 0) {
+				// If position is terminal or maximum depth was reached, evaluate it. The
+				// evaluator, the threats and the priorities are not needed for that, and
+				// the move is undone before they are used again, so they are left as they
+				// are.
+				eval = this.evaluate(game, mover, current + picker.score());
+				game.undo();
 			} else {
-				// Else, make a recursive call.
-				eval = minimaxAB(clone, depth - 1, alpha, beta, player).eval();
+				// Else, make a recursive call: a scout with a null window for all but the
+				// first move, and a full search if the scout finds a better move.
+				this.evaluator.update(move);
+				this.threats.update(move);
+				this.priorities.update(move);
+				if (i == 0) {
+					eval = -this.negamax(game, depth - 1, -beta, -alpha);
+				} else {
+					eval = -this.negamax(game, depth - 1, -alpha - 1, -alpha);
+					if (eval > alpha && eval < beta)
+						eval = -this.negamax(game, depth - 1, -beta, -alpha);
+				}
+				game.undo();
+				this.evaluator.update(move);
+				this.threats.update(move);
+				this.priorities.update(move);
+
+				// Nor the score of a child that was stopped.
+				if (this.aborted)
+					return 0;
 			}
 
-			// Maximizer
-			if (game.player() == player) {
-				if (eval > maxEval) {
-					maxEval = eval;
-					bestMove = move;
-					alpha = Math.max(alpha, maxEval);
-				}
+			if (eval > bestEval) {
+				bestEval = eval;
+				bestMove = move;
+				alpha = Math.max(alpha, eval);
 			}
-			// Minimizer
-			else {
-				if (eval < maxEval) {
-					maxEval = eval;
-					bestMove = move;
-					beta = Math.min(beta, maxEval);
+
+			// If position is unreachable, terminate loop and return. The move that cut
+			// off is remembered, so that it is searched early in similar positions.
+			if (alpha >= beta) {
+				this.cutoffs++;
+				if (i == 0)
+					this.firstCutoffs++;
+				if (this.killers[ply][0] != move) {
+					this.killers[ply][1] = this.killers[ply][0];
+					this.killers[ply][0] = move;
 				}
+				history[move] += (depth + 1) * (depth + 1);
+				if (previous >= 0)
+					this.counters[mover.ordinal()][previous] = move;
+				break;
 			}
-
-			// If position is unreachable, terminate loop and return
-			if (alpha >= beta)
-				return new EvaluatedMove(bestMove, maxEval);
 		}
 
-		return new EvaluatedMove(bestMove, maxEval);
-	}
-
-	class EvaluatedMove {
-
-		private int move;
-		private int eval;
-
-		public EvaluatedMove(int move, int eval) {
-			this.move = move;
-			this.eval = eval;
+		if (bestMove >= 0) {
+			int bound = (bestEval >= beta) ? TranspositionTable.LOWER
+					: (bestEval <= low) ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+			this.table.store(key, game.layout().transform(transform, bestMove), bestEval, depth, bound);
 		}
 
-		/**
-		 * Returns the position of the move.
-		 * 
-		 * @return
-		 */
-		public int move() {
-			return this.move;
-		}
+		if (depth == this.root)
+			this.rootMove = bestMove;
+		return bestEval;
+	}
 
-		/**
-		 * Returns the score of the move.
-		 * 
-		 * @return
-		 */
-		public int eval() {
-			return this.eval;
-		}
+	/**
+	 * Evaluates the position of the @game from the point of view of the @player,
+	 * given the @estimate of the position by the priority of the last move.
+	 */
+	private int evaluate(Igra game, Player player, int estimate) {
+		this.evaluated++;
+		return switch (game.state().outcome(player)) {
+		case WIN -> WIN;
+		case DRAW -> DRAW;
+		case LOSE -> LOSE;
+		case IN_PROGRESS -> estimate;
+		};
 	}
 
 	// MARK: - Utility functions
@@ -352,497 +666,3 @@ public class Inteligenca extends KdoIgra implements IPlayer {
 	public void mouseMoved(MouseEvent e) {
 	}
 }
-
-// MARK: - Evaluator
-
-/**
- * A class that provides static evaluation of a given position
- */
-
-class Evaluator {
-
-	// MARK: - Static
-
-	/**
-	 * Masks are stored in a map and indexed by pairs (direction, length)
-	 */
-	private static final Map<PairDirectionLength, BitSet> masks;
-
-	static class PairDirectionLength {
-		/**
-		 * A custom class intended to be used as keys in a HashMap in which BitMask
-		 * objects are stored.
-		 * 
-		 * @param direction
-		 * @param length
-		 */
-
-		private int direction;
-		private int length;
-
-		public PairDirectionLength(int length, int direction) {
-			this.direction = direction;
-			this.length = length;
-		}
-
-		public int direction() {
-			return this.direction;
-		}
-
-		public int length() {
-			return this.length;
-		}
-
-		/**
-		 * Of course, the hashCode() and equals() methods must be overriden.
-		 */
-		@Override
-		public int hashCode() {
-			int hash = this.length;
-			hash = this.direction * 1000 + length;
-			return hash;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if (o == this)
-				return true;
-			if (!(o instanceof PairDirectionLength))
-				return false;
-			PairDirectionLength pair = (PairDirectionLength) o;
-			return this.length == pair.length && this.direction == pair.direction;
-		}
-	}
-
-	/**
-	 * Inizialize @masks
-	 */
-	static {
-		masks = new HashMap<PairDirectionLength, BitSet>();
-
-		int[] inc = { 1, 14, 15, 16 }; // Search-directions
-		int[] lengths = { 2, 5, 6 }; // Lengths of patterns
-
-		for (int i : inc) {
-			for (int len : lengths) {
-				PairDirectionLength pair = new PairDirectionLength(len, i);
-				masks.put(pair, getMask(pair.direction(), pair.length()));
-			}
-		}
-	}
-
-	/**
-	 * Array of increments representing the four search-directions
-	 */
-	private static final int[] inc = { 1, 14, 15, 16 };
-
-	// MARK: - Properties
-
-	/**
-	 * The Game whose position the Evaluator is to evaluate
-	 */
-	private Igra game;
-
-	/**
-	 * Many different patterns contain the same subpatterns (namely the threes and
-	 * the fours). That is why, during the evaluation phase, we store the bitboards
-	 * representing these patterns.
-	 */
-	private Map<Integer, BitSet> cachedThrees;
-	private Map<Integer, BitSet> cachedFours;
-
-	/**
-	 * Methods for setting, retrieving and clearing cache, as well as for enquiring
-	 * whether there is any cache in the moment
-	 */
-	private void setCachedThrees(int direction, BitSet threes) {
-		// Clone when setting
-		this.cachedThrees.put(direction, (BitSet) threes.clone());
-	}
-
-	private void setCachedFours(int direction, BitSet fours) {
-		// Clone when setting
-		this.cachedFours.put(direction, (BitSet) fours.clone());
-	}
-
-	private boolean haveCachedThrees(int direction) {
-		return !(this.cachedThrees.get(direction) == null);
-	}
-
-	private boolean haveCachedFours(int direction) {
-		return !(this.cachedFours.get(direction) == null);
-	}
-
-	private BitSet getCachedThrees(int direction) {
-		// But clone when getting
-		return (BitSet) this.cachedThrees.get(direction).clone();
-	}
-
-	private BitSet getCachedFours(int direction) {
-		// But clone when getting
-		return (BitSet) this.cachedFours.get(direction).clone();
-	}
-
-	private void clearCachedThrees() {
-		this.cachedThrees = new HashMap<Integer, BitSet>();
-		for (int i : inc) {
-			this.cachedThrees.put(i, null);
-		}
-	}
-
-	private void clearCachedFours() {
-		this.cachedFours = new HashMap<Integer, BitSet>();
-		for (int i : inc) {
-			this.cachedFours.put(i, null);
-		}
-	}
-
-	// MARK: - constructor
-
-	public Evaluator(Igra game) {
-		this.game = game;
-		this.cachedThrees = new HashMap<Integer, BitSet>();
-		this.cachedFours = new HashMap<Integer, BitSet>();
-
-		for (int i : inc) {
-			this.cachedThrees.put(i, null);
-			this.cachedFours.put(i, null);
-		}
-	}
-
-	// MARK: - Evaluation
-
-	/**
-	 * The holistic evaluation of the board. If the return value is positive, the
-	 * position is favorable for the @player and vice versa.
-	 */
-	public int evaluate(Player player) {
-		int plus = evaluateSingleSidedNonterminal(player);
-		int minus = evaluateSingleSidedNonterminal(player.next());
-
-		return plus - minus;
-	}
-
-	/**
-	 * Evaluates the borad for a single player and resets cache.
-	 */
-	private int evaluateSingleSidedNonterminal(Player player) {
-		int eval = 0;
-
-		/**
-		 * Scores for patterns, as well as for terminal positions, are stored in a
-		 * hashmap @scores. The values are purely speculative.
-		 */
-
-		// LiveFour
-		eval += this.numLiveFours(player) * 10000;
-		// DeadFour
-		eval += this.numDeadFours(player) * 7000;
-		// OpenThree
-		eval += this.numOpenThrees(player) * 5000;
-		// BrokenThree
-		eval += this.numBrokenThrees(player) * 5000;
-		// ClosedThree
-		eval += this.numClosedThrees(player) * 1000;
-		// Two
-		eval += this.numTwos(player) * 10;
-
-		// Clear cache
-		this.clearCachedFours();
-		this.clearCachedThrees();
-
-		return eval;
-	}
-
-	// MARK: - Patterns
-
-	/**
-	 * A live four is a six-field pattern, where the four bits in the center are set
-	 * and the outer two are empty: 
-	 * 
-	 * 1) _ X X X X _
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numLiveFours(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			// Choose the appropriate bitboard
-			BitSet stones = this.game.getBoard(player);
-			BitSet fours;
-			// If there is cache, retrieve it
-			if (haveCachedFours(i)) {
-				fours = getCachedFours(i);
-			} else {
-				// Shift left three times
-				BitSet shifted1 = shl(stones, i);
-				BitSet shifted2 = shl(shifted1, i);
-				BitSet shifted3 = shl(shifted2, i);
-				// AND everything togeather
-				stones.and(shifted1);
-				stones.and(shifted2);
-				stones.and(shifted3);
-				fours = stones;
-				setCachedFours(i, fours); // Set cache
-			}
-			// Check for space on the left
-			stones = shl(stones, i);
-			BitSet empties = this.game.getEmpties();
-			stones.and(empties);
-			// Check for space on the right
-			empties = shl(empties, i * 5);
-			stones.and(empties);
-			// Apply mask
-			BitSet mask = masks.get(new PairDirectionLength(6, i));
-			stones.and(mask);
-			num = num + stones.cardinality();
-		}
-		return num;
-	}
-
-	/**
-	 * A dead four is a 5-stone pattern, where 4 consecutive bits are set and the
-	 * remaining bit is clear:
-	 * 
-	 * 1) _ X X X X 
-	 * 2) X X X X _
-	 * 
-	 * It is important to note that a live four is also a double dead four. This
-	 * way, the search is computationally less demanding. This has to be taken into
-	 * account when defining weights for patterns.
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numDeadFours(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			// Choose the appropriate bitboard
-			BitSet stones = this.game.getBoard(player);
-			BitSet fours;
-			// If there is cache, retrieve it
-			if (haveCachedFours(i)) {
-				fours = getCachedFours(i);
-			} else {
-				// Shift left three times
-				BitSet shifted1 = shl(stones, i);
-				BitSet shifted2 = shl(shifted1, i);
-				BitSet shifted3 = shl(shifted2, i);
-				// AND everything togeather
-				stones.and(shifted1);
-				stones.and(shifted2);
-				stones.and(shifted3);
-				fours = stones;
-				setCachedFours(i, fours); // Set cache
-			}
-			// First, count fours with space on the left
-			BitSet foursClone = (BitSet) fours.clone(); // We'll need another copy
-			BitSet empties = this.game.getEmpties();
-			fours = shl(fours, i);
-			fours.and(empties);
-			BitSet mask = masks.get(new PairDirectionLength(5, i));
-			fours.and(mask);
-			num = num + fours.cardinality();
-			empties = shl(empties, i * 4);
-			foursClone.and(empties);
-			foursClone.and(mask);
-			num = num + foursClone.cardinality();
-		}
-		return num;
-	}
-
-	/**
-	 * A wide-open three is a three that is one move away from becoming a live four.
-	 * It is a 6-stone pattern:
-	 * 
-	 * 1) _ X X X _ _ 
-	 * 2) _ _ X X X _
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numOpenThrees(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			// Choose the appropriate bitboard
-			BitSet stones = this.game.getBoard(player);
-			BitSet threes;
-			// If there is cache, retrieve it
-			if (haveCachedThrees(i)) {
-				threes = getCachedThrees(i);
-			} else {
-				// Shift left twice times
-				BitSet shifted1 = shl(stones, i);
-				BitSet shifted2 = shl(shifted1, i);
-				// AND everything togeather
-				stones.and(shifted1);
-				stones.and(shifted2);
-				threes = stones;
-				setCachedThrees(i, threes); // Set cache
-			}
-			BitSet threesClone = (BitSet) threes.clone();
-			BitSet empties = this.game.getEmpties();
-			BitSet emptiesClone = this.game.getEmpties();
-			threes = shl(threes, i);
-			threes.and(empties);
-			threes = shl(threes, i);
-			threes.and(empties);
-			empties = shl(empties, 5 * i);
-			threes.and(empties);
-			BitSet mask = masks.get(new PairDirectionLength(6, i));
-			threes.and(mask);
-			num = num + threes.cardinality();
-			threesClone = shl(threesClone, i);
-			threesClone.and(emptiesClone);
-			emptiesClone = shl(emptiesClone, 4 * i);
-			threesClone.and(emptiesClone);
-			emptiesClone = shl(emptiesClone, i);
-			threesClone.and(emptiesClone);
-			threesClone.and(mask);
-			num = num + threesClone.cardinality();
-		}
-		return num;
-	}
-
-	/**
-	 * A closed three is a three which can become five but isn't a forcing move:
-	 * 
-	 * 1) X X X _ _ 
-	 * 2) _ X X X _ 
-	 * 3) _ _ X X X
-	 * 
-	 * Again, it may happen, that another pattern is also counted as a closed three.
-	 * This must be taken into account when defining weights, probabbly by making
-	 * differences between higher patterns and lower patterns smaller.
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numClosedThrees(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			// Choose the appropriate bitboard
-			BitSet stones = this.game.getBoard(player);
-			BitSet threes;
-			// If there is cache, retrieve it
-			if (haveCachedThrees(i)) {
-				threes = getCachedThrees(i);
-			} else {
-				// Shift left twice times
-				BitSet shifted1 = shl(stones, i);
-				BitSet shifted2 = shl(shifted1, i);
-				// AND everything togeather
-				stones.and(shifted1);
-				stones.and(shifted2);
-				threes = stones;
-				setCachedThrees(i, threes); // Set cache
-			}
-			BitSet threesC = (BitSet) threes.clone();
-			BitSet threesCC = (BitSet) threes.clone();
-			BitSet empties = this.game.getEmpties();
-			BitSet emptiesC = this.game.getEmpties();
-			/**
-			 * search for 1st pattern
-			 */
-			threes = shl(threes, i);
-			threes.and(empties);
-			threes = shl(threes, i);
-			threes.and(empties);
-			BitSet mask = masks.get(new PairDirectionLength(5, i));
-			threes.and(mask);
-			num = num + threes.cardinality();
-			/**
-			 * search for 2nd pattern
-			 */
-			threesC = shl(threesC, i);
-			threesC.and(empties);
-			empties = shl(empties, 4 * i);
-			threesC.and(empties);
-			threesC.and(mask);
-			num = num + threesC.cardinality();
-			/**
-			 * search for 3rd pattern
-			 */
-			emptiesC = shl(emptiesC, 3 * i);
-			threesCC.and(emptiesC);
-			emptiesC = shl(emptiesC, i);
-			threesCC.and(emptiesC);
-			threesCC.and(mask);
-			num = num + threesCC.cardinality();
-		}
-		return num;
-	}
-
-	/**
-	 * A broken three is a six-stone pattern. Three nonconsecutive of the center
-	 * four are set and the other three are clear. A broken three is as valuable as
-	 * an open three.
-	 * 
-	 * 1) _ X X _ X _ 
-	 * 2) _ X _ _ X _
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numBrokenThrees(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			BitSet stones = this.game.getBoard(player);
-			BitSet stonesC = this.game.getBoard(player);
-			BitSet empties = this.game.getEmpties();
-			BitSet emptiesC = this.game.getEmpties();
-			/**
-			 * search for 1st pattern
-			 */
-			BitSet shifted1 = shl(stones, 2 * i);
-			BitSet shifted2 = shl(shifted1, i);
-			stones.and(shifted1);
-			stones.and(shifted2);
-			stones = shl(stones, i);
-			stones.and(empties);
-			empties = shl(empties, 2 * i);
-			stones.and(empties);
-			empties = shl(empties, 3 * i);
-			stones.and(empties);
-			BitSet mask = masks.get(new PairDirectionLength(6, i));
-			stones.and(mask);
-			num = num + stones.cardinality();
-			/**
-			 * search for 2nd pattern
-			 */
-			BitSet shifted1C = shl(stonesC, i);
-			BitSet shifted2C = shl(shifted1C, 2 * i);
-			stonesC.and(shifted1C);
-			stonesC.and(shifted2C);
-			stonesC = shl(stonesC, i);
-			stonesC.and(emptiesC);
-			emptiesC = shl(emptiesC, 3 * i);
-			stonesC.and(emptiesC);
-			emptiesC = shl(emptiesC, 2 * i);
-			stonesC.and(emptiesC);
-			stonesC.and(mask);
-			num = num + stonesC.cardinality();
-		}
-		return num;
-	}
-
-	/**
-	 * Number of consecutive twos (with repetitions). To be asigned a very small
-	 * number.
-	 * 
-	 * @param player
-	 * @return
-	 */
-	private int numTwos(Player player) {
-		int num = 0;
-		for (int i : inc) {
-			BitSet stones = this.game.getBoard(player);
-			stones.and(shl(stones, i));
-			BitSet mask = masks.get(new PairDirectionLength(2, i));
-			stones.and(mask);
-			num = num + stones.cardinality();
-		}
-		return num;
-	}
-}
@@ -0,0 +1,262 @@
+package inteligenca;
+
+import logika.Igra;
+import logika.Igra.Player;
+import util.Bitboard;
+
+/**
+ * Picks the moves of a node of the search one at a time, in stages. Each stage
+ * is only generated when the moves of the previous ones did not cut off, so a
+ * node that is refuted by its first move does no more work than that move:
+ *
+ * 1. the best move of the node found earlier (from the table, or of the previous
+ * iteration at the root), without looking at any other move;
+ *
+ * 2. threats, read from the fours on the board (see Threats): a move that
+ * makes five wins at once (see winning()), and if the opponent threatens to
+ * make five, the moves that block it are the only ones that do not lose, so
+ * nothing else is picked;
+ *
+ * 3. the moves with the highest priority (see MovePriorities). Moves with the
+ * same priority are ordered by the heuristics of the search, the killers first,
+ * then the counter move and then by the history. Only this stage looks at all
+ * the candidates.
+ *
+ * A picker is reused for every node at the same depth, so it allocates nothing
+ * after it is created.
+ */
+
+public class MovePicker {
+
+	// MARK: - Static
+
+	private static final int FIRST = 0;
+	private static final int THREATS = 1;
+	private static final int BLOCKS = 2;
+	private static final int ORDERED = 3;
+	private static final int DONE = 4;
+
+	// MARK: - Properties
+
+	private final Igra game;
+	private final Threats threats;
+	private final MovePriorities priorities;
+
+	/**
+	 * Fields that make five for a player, and a scratch board to collect them.
+	 */
+	private final Bitboard fives;
+	private final Bitboard gains;
+
+	/**
+	 * Moves of the current stage and their priorities.
+	 */
+	private final int[] moves;
+	private final int[] scores;
+	private int count;
+	private int index;
+
+	/**
+	 * The node: the player on the move, the candidates, the number of moves with
+	 * the highest priority to pick, the best move found earlier and the
+	 * heuristics.
+	 */
+	private Player mover;
+	private Bitboard candidates;
+	private int width;
+	private int first;
+	private int[] killers;
+	private int counter;
+	private int[] history;
+
+	private int stage;
+	private int score;
+	private boolean winning;
+
+	/**
+	 * Number of candidates ordered by their priorities.
+	 */
+	private long estimated;
+
+	// MARK: - Constructor
+
+	public MovePicker(Igra game, Threats threats, MovePriorities priorities) {
+		this.game = game;
+		this.threats = threats;
+		this.priorities = priorities;
+		this.fives = new Bitboard(game.layout().bits());
+		this.gains = new Bitboard(game.layout().bits());
+		this.moves = new int[game.layout().bits()];
+		this.scores = new int[game.layout().bits()];
+	}
+
+	// MARK: - Methods
+
+	/**
+	 * Starts picking the moves of the current position of the game.
+	 *
+	 * @param width   The number of moves with the highest priority to pick.
+	 * @param first   The best move found earlier, or -1.
+	 * @param killers The killer moves of the ply.
+	 * @param counter The counter move to the last move, or -1.
+	 * @param history The history of the player on the move.
+	 */
+	public void reset(int width, int first, int[] killers, int counter, int[] history) {
+		this.mover = this.game.player();
+		this.candidates = this.game.candidates();
+		this.width = width;
+		this.first = (first >= 0 && this.candidates.get(first)) ? first : -1;
+		this.killers = killers;
+		this.counter = counter;
+		this.history = history;
+		this.stage = FIRST;
+		this.count = 0;
+		this.index = 0;
+		this.winning = false;
+	}
+
+	/**
+	 * Returns the next move, or -1 when there are no more moves.
+	 *
+	 * @return
+	 */
+	public int next() {
+		while (true) {
+			switch (this.stage) {
+			case FIRST:
+				this.stage = THREATS;
+				if (this.first >= 0) {
+					this.score = this.priorities.priority(this.mover, this.first);
+					return this.first;
+				}
+				break;
+
+			case THREATS:
+				this.threats();
+				break;
+
+			case BLOCKS:
+			case ORDERED:
+				while (this.index < this.count) {
+					int move = this.moves[this.index];
+					this.score = this.scores[this.index++];
+					if (move != this.first)
+						return move;
+				}
+				this.stage = DONE;
+				break;
+
+			default:
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the priority of the last picked move.
+	 *
+	 * @return
+	 */
+	public int score() {
+		return this.score;
+	}
+
+	/**
+	 * Tells whether the last picked move makes five. Such a move wins, so there
+	 * is no need to pick any more.
+	 *
+	 * @return
+	 */
+	public boolean winning() {
+		return this.winning;
+	}
+
+	/**
+	 * Returns the number of candidates ordered by their priorities by this picker.
+	 *
+	 * @return
+	 */
+	public long estimated() {
+		return this.estimated;
+	}
+
+	// MARK: - Stages
+
+	/**
+	 * Looks for fives among the gains of the fours of both players and prepares
+	 * the next stage: the win, the blocks or the moves with the highest priority.
+	 */
+	private void threats() {
+		this.count = 0;
+		this.index = 0;
+
+		int win = this.fives(this.mover).nextSetBit(0);
+		if (win >= 0) {
+			// Picked again even if it was the first move, since it ends the game.
+			this.winning = true;
+			this.first = -1;
+			this.moves[0] = win;
+			this.scores[0] = this.priorities.priority(this.mover, win);
+			this.count = 1;
+			this.stage = BLOCKS;
+			return;
+		}
+
+		Bitboard blocks = this.fives(this.mover.next());
+		for (int n = blocks.nextSetBit(0); n >= 0; n = blocks.nextSetBit(n + 1)) {
+			this.moves[this.count] = n;
+			this.scores[this.count++] = this.priorities.priority(this.mover, n);
+		}
+		if (this.count > 0) {
+			this.stage = BLOCKS;
+			return;
+		}
+
+		this.estimated += this.candidates.cardinality();
+		this.count = this.priorities.best(this.mover, this.candidates, this.width, this.moves, this.scores);
+		this.order();
+		this.stage = ORDERED;
+	}
+
+	/**
+	 * Returns the fields where the @player makes five, the gains of its fours and
+	 * straight fours.
+	 */
+	private Bitboard fives(Player player) {
+		this.threats.gains(player, Threats.Type.STRAIGHT_FOUR, this.fives);
+		return this.fives.or(this.threats.gains(player, Threats.Type.FOUR, this.gains));
+	}
+
+	/**
+	 * Sorts the moves with the same priority by the heuristics, see rank(). The
+	 * moves come sorted by the priority.
+	 */
+	private void order() {
+		for (int i = 1; i < this.count; i++) {
+			int move = this.moves[i];
+			int score = this.scores[i];
+			long rank = this.rank(move);
+			int j = i;
+			while (j > 0 && this.scores[j - 1] == score && this.rank(this.moves[j - 1]) < rank) {
+				this.moves[j] = this.moves[j - 1];
+				j--;
+			}
+			this.moves[j] = move;
+		}
+	}
+
+	/**
+	 * Ranks the @move by the heuristics: the killers go first, then the counter
+	 * move, and then the moves by their history.
+	 */
+	private long rank(int move) {
+		long rank = this.history[move];
+		if (move == this.killers[0])
+			rank += 3L << 32;
+		else if (move == this.killers[1])
+			rank += 2L << 32;
+		else if (move == this.counter)
+			rank += 1L << 32;
+		return rank;
+	}
+}
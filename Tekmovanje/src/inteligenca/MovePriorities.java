@@ -0,0 +1,190 @@
+package inteligenca;
+
+import logika.Igra;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * Keeps, for every empty field and both players, how valuable it is to play
+ * there: the attack (how much the player's own patterns gain) and the defence
+ * (how much the opponent's patterns lose). Together they are exactly the change
+ * of the evaluation of LineEvaluator, so moves can be ordered without playing
+ * or even estimating them one by one.
+ *
+ * The values of a field are sums over the four lines through it. A field only
+ * shares windows of patterns with the fields at most window() - 1 steps away on
+ * the same line, so after a move is played or undone, only those fields on the
+ * four lines through the move are scored again.
+ */
+
+public class MovePriorities {
+
+	// MARK: - Properties
+
+	private final Igra game;
+	private final Layout layout;
+	private final Patterns patterns;
+
+	/**
+	 * Attack and defence of each field, indexed by the player and the field.
+	 */
+	private final int[][] attacks;
+	private final int[][] defences;
+
+	/**
+	 * Contributions of each line to the attack and defence of its fields, indexed
+	 * by the player, the line and the position on the line.
+	 */
+	private final int[][][] lineAttacks;
+	private final int[][][] lineDefences;
+
+	// MARK: - Constructor
+
+	/**
+	 * Creates priorities that follow the @game. They have to be told about every
+	 * move played or undone in the game afterwards, see update().
+	 *
+	 * @param game
+	 */
+	public MovePriorities(Igra game) {
+		this(game, Patterns.DEFAULT);
+	}
+
+	public MovePriorities(Igra game, Patterns patterns) {
+		this.game = game;
+		this.layout = game.layout();
+		this.patterns = patterns;
+		this.attacks = new int[Player.ALL.length][this.layout.bits()];
+		this.defences = new int[Player.ALL.length][this.layout.bits()];
+		this.lineAttacks = new int[Player.ALL.length][this.layout.lines()][];
+		this.lineDefences = new int[Player.ALL.length][this.layout.lines()][];
+
+		for (int l = 0; l < this.layout.lines(); l++) {
+			for (int p = 0; p < Player.ALL.length; p++) {
+				this.lineAttacks[p][l] = new int[this.layout.lineLength(l)];
+				this.lineDefences[p][l] = new int[this.layout.lineLength(l)];
+			}
+			this.rescore(l, 0, this.layout.lineLength(l) - 1);
+		}
+	}
+
+	// MARK: - Methods
+
+	/**
+	 * Scores again the fields near @move on the lines through it. To be called
+	 * after the move is played or undone.
+	 *
+	 * @param move
+	 */
+	public void update(int move) {
+		int reach = this.patterns.window() - 1;
+		for (int d = 0; d < this.layout.directions().length; d++) {
+			int l = this.layout.line(d, move);
+			if (l < 0)
+				continue;
+			int k = this.layout.position(d, move);
+			this.rescore(l, Math.max(0, k - reach), Math.min(this.layout.lineLength(l) - 1, k + reach));
+		}
+	}
+
+	/**
+	 * Returns how much the @player's patterns gain by playing the field n.
+	 *
+	 * @param player
+	 * @param n
+	 * @return
+	 */
+	public int attack(Player player, int n) {
+		return this.attacks[player.ordinal()][n];
+	}
+
+	/**
+	 * Returns how much the opponent's patterns lose if the @player plays the field
+	 * n.
+	 *
+	 * @param player
+	 * @param n
+	 * @return
+	 */
+	public int defence(Player player, int n) {
+		return this.defences[player.ordinal()][n];
+	}
+
+	/**
+	 * Returns the change of the evaluation, from the point of view of the
+	 * @player, if the @player plays the field n.
+	 *
+	 * @param player
+	 * @param n
+	 * @return
+	 */
+	public int priority(Player player, int n) {
+		return this.attacks[player.ordinal()][n] + this.defences[player.ordinal()][n];
+	}
+
+	/**
+	 * Selects the (at most) @count fields of @candidates with the highest
+	 * priority for the @player. They are stored in @moves from the best on, and
+	 * their priorities in @priorities. Fields with the same priority keep their
+	 * order.
+	 *
+	 * @param player
+	 * @param candidates
+	 * @param count
+	 * @param moves
+	 * @param priorities
+	 * @return The number of selected fields.
+	 */
+	public int best(Player player, Bitboard candidates, int count, int[] moves, int[] priorities) {
+		if (count <= 0)
+			return 0;
+		int size = 0;
+		for (int n = candidates.nextSetBit(0); n >= 0; n = candidates.nextSetBit(n + 1)) {
+			int priority = this.priority(player, n);
+			if (size == count && priority <= priorities[size - 1])
+				continue;
+			// Insert the field after the ones that are at least as good.
+			int i = (size < count) ? size++ : size - 1;
+			while (i > 0 && priorities[i - 1] < priority) {
+				moves[i] = moves[i - 1];
+				priorities[i] = priorities[i - 1];
+				i--;
+			}
+			moves[i] = n;
+			priorities[i] = priority;
+		}
+		return size;
+	}
+
+	// MARK: - Scoring
+
+	/**
+	 * Scores again the positions from @from to @to of the line l.
+	 */
+	private void rescore(int l, int from, int to) {
+		int reach = this.patterns.window() - 1;
+		int empties = this.game.emptyLine(l);
+		for (int k = from; k <= to; k++) {
+			int n = this.layout.lineField(l, k);
+			int field = 1 << k;
+			for (Player player : Player.ALL) {
+				int p = player.ordinal();
+				int attack = 0;
+				int defence = 0;
+				if ((empties & field) != 0) {
+					int own = this.game.line(player, l);
+					int other = this.game.line(player.next(), l);
+					attack = this.patterns.score(own | field, empties & ~field, k - reach, k)
+							- this.patterns.score(own, empties, k - reach, k);
+					defence = this.patterns.score(other, empties, k - reach, k)
+							- this.patterns.score(other, empties & ~field, k - reach, k);
+				}
+				this.attacks[p][n] += attack - this.lineAttacks[p][l][k];
+				this.defences[p][n] += defence - this.lineDefences[p][l][k];
+				this.lineAttacks[p][l][k] = attack;
+				this.lineDefences[p][l][k] = defence;
+			}
+		}
+	}
+}
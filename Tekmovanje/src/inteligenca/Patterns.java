@@ -0,0 +1,413 @@
+package inteligenca;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import logika.Layout;
+
+/**
+ * A set of patterns with weights, compiled into a lookup table that scores a
+ * line in a single pass, no matter how many patterns there are.
+ *
+ * Patterns are declared as strings of fields along a line:
+ *
+ * X - the player's stone,
+ * _ - an empty field,
+ * ? - any field (including one past the edge of the board).
+ *
+ * Leading ? are dropped when a pattern is compiled: they only move the start of
+ * a match, which could then lie before the first field of a line, so "?XX"
+ * matches exactly where "XX" does. Trailing ? do not move the start and are
+ * kept.
+ *
+ * For example, "_XX_X_" is a broken three. A line is scored by sliding a window
+ * as wide as the longest pattern along it. The table gives, for every content
+ * of the window, the sum of the weights of the patterns that start at the first
+ * field of the window and match it. Fields past the end of the line are neither
+ * stones nor empty, so they act as a wall.
+ *
+ * Patterns are immutable and can be shared between threads. They can be saved
+ * to and loaded from a weights file, a properties file with a line
+ * "shape=weight" for each pattern.
+ */
+
+public final class Patterns {
+
+	// MARK: - Static
+
+	/**
+	 * Longest supported pattern. The table has 4^MAX_WINDOW entries.
+	 */
+	public static final int MAX_WINDOW = 8;
+
+	/**
+	 * The largest range() of patterns loaded from a weights file. A player has at
+	 * most one window per field and direction, so an evaluation (the score of the
+	 * player less the score of the opponent) on the largest board stays within
+	 * half of Inteligenca.WIN, and is never taken for a won or lost game.
+	 */
+	public static final int MAX_RANGE = Inteligenca.WIN / 2 / (4 * Layout.MAX_SIZE * Layout.MAX_SIZE);
+
+	/**
+	 * The built-in patterns. Patterns overlap: a live four is also two dead fours,
+	 * an open three is also a closed three, and so on. This has to be taken into
+	 * account when defining weights.
+	 */
+	public static final Patterns BUILT_IN = new Patterns(new String[] {
+			// A live four: the four stones in the center are set and the outer two
+			// fields are empty.
+			"_XXXX_",
+			// Dead fours: four consecutive stones and one empty field.
+			"_XXXX", "XXXX_",
+			// Open threes: one move away from becoming a live four.
+			"__XXX_", "_XXX__",
+			// Broken threes: three of the four center fields are set. As valuable as
+			// an open three.
+			"_X_XX_", "_XX_X_",
+			// Closed threes: can become five, but are not forcing moves.
+			"__XXX", "_XXX_", "XXX__",
+			// Twos: to be assigned a very small number.
+			"XX" },
+			new int[] { Evaluator.LIVE_FOUR, Evaluator.DEAD_FOUR, Evaluator.DEAD_FOUR, Evaluator.OPEN_THREE,
+					Evaluator.OPEN_THREE, Evaluator.BROKEN_THREE, Evaluator.BROKEN_THREE, Evaluator.CLOSED_THREE,
+					Evaluator.CLOSED_THREE, Evaluator.CLOSED_THREE, Evaluator.TWO });
+
+	/**
+	 * The weights file loaded at startup (see tuning.WeightTuner), given by the
+	 * property gomoku.weights.
+	 */
+	public static final String WEIGHTS = System.getProperty("gomoku.weights", "weights.properties");
+
+	/**
+	 * The patterns used by the evaluators: the ones from the weights file if it
+	 * exists, and the built-in ones otherwise.
+	 */
+	public static final Patterns DEFAULT = loadDefault();
+
+	private static Patterns loadDefault() {
+		Path file = Paths.get(WEIGHTS);
+		if (!Files.exists(file))
+			return BUILT_IN;
+		try {
+			return load(file);
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Cannot load weights from " + file + ", using the built-in ones: " + e.getMessage());
+			return BUILT_IN;
+		}
+	}
+
+	/**
+	 * Loads patterns from a weights file.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a pattern or a weight is malformed, if
+	 *                                  the weights are not symmetric, or if their
+	 *                                  range() is above MAX_RANGE.
+	 */
+	public static Patterns load(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+		// Sorted, so that the order of the patterns does not depend on hashing.
+		TreeSet<String> shapes = new TreeSet<String>(properties.stringPropertyNames());
+		int[] weights = new int[shapes.size()];
+		int i = 0;
+		for (String shape : shapes) {
+			try {
+				weights[i++] = Integer.parseInt(properties.getProperty(shape).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Malformed weight of pattern " + shape);
+			}
+		}
+		Patterns patterns = new Patterns(shapes.toArray(new String[0]), weights);
+
+		// A line reads the same both ways, so a pattern and its mirror image need the
+		// same weight. Otherwise a position and its mirror image would score
+		// differently, while caches keyed by the canonical hash take them as one.
+		for (i = 0; i < patterns.size(); i++) {
+			int mirror = patterns.mirror(i);
+			if (mirror < 0)
+				throw new IllegalArgumentException("Pattern has no mirror image: " + patterns.shape(i));
+			if (patterns.weight(mirror) != patterns.weight(i))
+				throw new IllegalArgumentException(
+						"Patterns " + patterns.shape(i) + " and " + patterns.shape(mirror) + " differ in weight");
+		}
+
+		if (patterns.range() > MAX_RANGE)
+			throw new IllegalArgumentException(
+					"Weights are too large: the score of a window ranges over " + patterns.range() + ", at most "
+							+ MAX_RANGE + " is allowed");
+		return patterns;
+	}
+
+	// MARK: - Properties
+
+	private final String[] shapes;
+	private final int[] weights;
+
+	/**
+	 * Fields of each pattern that must hold a stone and that must be empty. The
+	 * first field of a pattern is the lowest bit.
+	 */
+	private final int[] stoneMasks;
+	private final int[] emptyMasks;
+
+	/**
+	 * The ? of each pattern between its first and last stone or empty field.
+	 * Those have to be fields of the line, while trailing ? may lie past its end.
+	 */
+	private final int[] fieldMasks;
+
+	/**
+	 * Number of fields in a window, i.e. the length of the longest pattern.
+	 */
+	private final int window;
+
+	/**
+	 * The largest number of fields before the first stone of a pattern. Windows
+	 * starting further before the first stone of a line cannot match.
+	 */
+	private final int lead;
+
+	/**
+	 * The score of a window, indexed by stones | empties << window.
+	 */
+	private final int[] table;
+
+	// MARK: - Constructor
+
+	/**
+	 * Compiles the patterns.
+	 *
+	 * @param shapes  Patterns, as described above.
+	 * @param weights The weight of each pattern.
+	 * @throws IllegalArgumentException if a pattern is malformed.
+	 */
+	public Patterns(String[] shapes, int[] weights) {
+		if (shapes.length != weights.length)
+			throw new IllegalArgumentException("Each pattern needs a weight.");
+		this.shapes = shapes.clone();
+		this.weights = weights.clone();
+
+		int[] stoneMasks = new int[shapes.length];
+		int[] emptyMasks = new int[shapes.length];
+		this.stoneMasks = stoneMasks;
+		this.emptyMasks = emptyMasks;
+		this.fieldMasks = new int[shapes.length];
+		int window = 1;
+		int lead = 0;
+		for (int i = 0; i < shapes.length; i++) {
+			String shape = shapes[i];
+			if (shape.length() > MAX_WINDOW)
+				throw new IllegalArgumentException("Pattern is too long: " + shape);
+			for (int k = 0; k < shape.length(); k++) {
+				switch (shape.charAt(k)) {
+				case 'X' -> stoneMasks[i] |= 1 << k;
+				case '_' -> emptyMasks[i] |= 1 << k;
+				case '?' -> {
+				}
+				default -> throw new IllegalArgumentException("Unknown field in pattern: " + shape);
+				}
+			}
+			if (stoneMasks[i] == 0)
+				throw new IllegalArgumentException("Pattern has no stones: " + shape);
+			int skip = Integer.numberOfTrailingZeros(stoneMasks[i] | emptyMasks[i]);
+			stoneMasks[i] >>>= skip;
+			emptyMasks[i] >>>= skip;
+			int span = (Integer.highestOneBit(stoneMasks[i] | emptyMasks[i]) << 1) - 1;
+			this.fieldMasks[i] = span & ~(stoneMasks[i] | emptyMasks[i]);
+			window = Math.max(window, shape.length() - skip);
+			lead = Math.max(lead, Integer.numberOfTrailingZeros(stoneMasks[i]));
+		}
+		this.window = window;
+		this.lead = lead;
+
+		int full = (1 << window) - 1;
+		this.table = new int[1 << (2 * window)];
+		for (int stones = 0; stones <= full; stones++) {
+			for (int empties = 0; empties <= full; empties++) {
+				if ((stones & empties) != 0)
+					continue;
+				int score = 0;
+				for (int i = 0; i < shapes.length; i++) {
+					if ((stones & stoneMasks[i]) == stoneMasks[i] && (empties & emptyMasks[i]) == emptyMasks[i])
+						score += weights[i];
+				}
+				this.table[stones | empties << window] = score;
+			}
+		}
+	}
+
+	/**
+	 * Returns the same patterns with other @weights.
+	 *
+	 * @param weights
+	 * @return
+	 */
+	public Patterns withWeights(int[] weights) {
+		return new Patterns(this.shapes, weights);
+	}
+
+	/**
+	 * Saves the patterns to a weights file.
+	 *
+	 * @param file
+	 * @param comment A line written at the top of the file.
+	 * @throws IOException
+	 */
+	public void save(Path file, String comment) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("# " + comment);
+			writer.newLine();
+			for (int i = 0; i < this.shapes.length; i++) {
+				writer.write(this.shapes[i] + "=" + this.weights[i]);
+				writer.newLine();
+			}
+		}
+	}
+
+	// MARK: - Accessors
+
+	/**
+	 * Returns the number of patterns.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return this.shapes.length;
+	}
+
+	public String shape(int i) {
+		return this.shapes[i];
+	}
+
+	public int weight(int i) {
+		return this.weights[i];
+	}
+
+	/**
+	 * Returns the index of the mirror image of the i-th pattern (the pattern read
+	 * backwards), which is i itself if the pattern is symmetric, or -1 if there is
+	 * none.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int mirror(int i) {
+		String reverse = new StringBuilder(this.shapes[i]).reverse().toString();
+		for (int j = 0; j < this.shapes.length; j++) {
+			if (this.shapes[j].equals(reverse))
+				return j;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the fields of the i-th pattern that must hold a stone.
+	 *
+	 * @param i
+	 * @return
+	 */
+	int stones(int i) {
+		return this.stoneMasks[i];
+	}
+
+	/**
+	 * Returns the fields of the i-th pattern that must be empty.
+	 *
+	 * @param i
+	 * @return
+	 */
+	int empties(int i) {
+		return this.emptyMasks[i];
+	}
+
+	/**
+	 * Returns the ? of the i-th pattern that have to be fields of the line.
+	 *
+	 * @param i
+	 * @return
+	 */
+	int fields(int i) {
+		return this.fieldMasks[i];
+	}
+
+	/**
+	 * Returns the difference between the highest and the lowest score of a
+	 * window. It includes the empty window, which scores 0.
+	 *
+	 * @return
+	 */
+	public int range() {
+		int highest = 0;
+		int lowest = 0;
+		for (int score : this.table) {
+			highest = Math.max(highest, score);
+			lowest = Math.min(lowest, score);
+		}
+		return highest - lowest;
+	}
+
+	/**
+	 * Returns the length of the longest pattern.
+	 *
+	 * @return
+	 */
+	public int window() {
+		return this.window;
+	}
+
+	// MARK: - Scoring
+
+	/**
+	 * Scores a single line of the given length.
+	 *
+	 * @param stones  The player's stones on the line.
+	 * @param empties The empty fields of the line.
+	 * @param length
+	 * @return
+	 */
+	public int score(int stones, int empties, int length) {
+		// Every pattern has a stone, so windows without stones can be skipped.
+		if (stones == 0)
+			return 0;
+		int full = (1 << this.window) - 1;
+		int first = Math.max(0, Integer.numberOfTrailingZeros(stones) - this.lead);
+		int last = Math.min(length - 1, 31 - Integer.numberOfLeadingZeros(stones));
+		int score = 0;
+		for (int k = first; k <= last; k++) {
+			score += this.table[((stones >>> k) & full) | ((empties >>> k) & full) << this.window];
+		}
+		return score;
+	}
+
+	/**
+	 * Scores the windows of a line starting at the positions from @from to @to
+	 * (inclusive). When a single field k of a line changes, only the windows from
+	 * k - window() + 1 to k change with it.
+	 *
+	 * @param stones  The player's stones on the line.
+	 * @param empties The empty fields of the line.
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public int score(int stones, int empties, int from, int to) {
+		int full = (1 << this.window) - 1;
+		int score = 0;
+		for (int k = Math.max(0, from); k <= to; k++) {
+			score += this.table[((stones >>> k) & full) | ((empties >>> k) & full) << this.window];
+		}
+		return score;
+	}
+}
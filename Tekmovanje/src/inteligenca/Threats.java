@@ -0,0 +1,441 @@
+package inteligenca;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logika.Igra;
+import logika.Igra.Player;
+import logika.Layout;
+import util.Bitboard;
+
+/**
+ * Keeps a list of the threats on the board, i.e. of the groups of stones that
+ * threaten to become five, together with the fields that complete them (gains)
+ * and the fields the opponent can block them with (defences):
+ *
+ * STRAIGHT_FOUR - four stones with two gains (_ X X X X _). It cannot be
+ *                 defended.
+ * FOUR          - four stones that become five with a single gain, which is
+ *                 also the only defence (X X _ X X, X X X X |).
+ * THREE         - three stones that become a straight four with a gain (_ X X X _,
+ *                 _ X _ X X _). Defences are the fields that prevent any
+ *                 straight four of those stones. Fields that are already gains
+ *                 of a four are not counted as gains of threes.
+ *
+ * Threats lie on lines (see Layout), so they are found with bit operations on
+ * the line encodings of the game. As with LineEvaluator, only the four lines
+ * through a move are scanned again after the move is played or undone, which
+ * makes the list cheap enough to keep up to date during a search. The defences
+ * of threes, the most expensive part, are left until they are asked for.
+ */
+
+public class Threats {
+
+	// MARK: - Static
+
+	/**
+	 * Types of threats, from the strongest.
+	 */
+	public enum Type {
+		STRAIGHT_FOUR, FOUR, THREE
+	}
+
+	/**
+	 * Types, cached so that rescanning does not copy values().
+	 */
+	private static final Type[] TYPES = Type.values();
+
+	/**
+	 * Threats on a line are encoded in longs. Fields are stored relative to the
+	 * lowest stone of the threat, in masks of eight fields starting two fields
+	 * before it:
+	 *
+	 * bits 0-1   type
+	 * bit 2      owner
+	 * bits 3-11  line
+	 * bits 12-17 position of the lowest stone on the line
+	 * bits 18-25 stones
+	 * bits 26-33 gains
+	 * bits 34-41 defences
+	 */
+	private static final int OFFSET = 2;
+
+	private static long encode(Type type, Player owner, int line, int stones, int gains, int defences) {
+		int low = Integer.numberOfTrailingZeros(stones);
+		return type.ordinal() | (long) owner.ordinal() << 2 | (long) line << 3 | (long) low << 12
+				| (long) relative(stones, low) << 18 | (long) relative(gains, low) << 26
+				| (long) relative(defences, low) << 34;
+	}
+
+	private static int relative(int mask, int low) {
+		return ((low >= OFFSET) ? mask >>> (low - OFFSET) : mask << (OFFSET - low)) & 0xFF;
+	}
+
+	private static Type type(long code) {
+		return TYPES[(int) code & 3];
+	}
+
+	private static Player owner(long code) {
+		return Player.ALL[(int) (code >>> 2) & 1];
+	}
+
+	private static int line(long code) {
+		return (int) (code >>> 3) & 0x1FF;
+	}
+
+	/**
+	 * Returns one of the masks (shift 18, 26 or 34) as positions on the line.
+	 */
+	private static int mask(long code, int shift) {
+		int relative = (int) (code >>> shift) & 0xFF;
+		int low = (int) (code >>> 12) & 0x3F;
+		return (low >= OFFSET) ? relative << (low - OFFSET) : relative >>> (OFFSET - low);
+	}
+
+	/**
+	 * Bit k is set if the fields k, ..., k + 4 are all set.
+	 */
+	private static int fives(int stones) {
+		return stones & stones >>> 1 & stones >>> 2 & stones >>> 3 & stones >>> 4;
+	}
+
+	/**
+	 * Bit k is set if the fields k, ..., k + 3 are stones and the fields k - 1 and
+	 * k + 4 are empty.
+	 */
+	private static int straightFours(int stones, int empties) {
+		return stones & stones >>> 1 & stones >>> 2 & stones >>> 3 & empties << 1 & empties >>> 4;
+	}
+
+	/**
+	 * Returns the mask of the fields below n, i.e. 0, ..., n - 1.
+	 */
+	private static int below(int n) {
+		return (n >= 32) ? -1 : ~(-1 << n);
+	}
+
+	// MARK: - Threat
+
+	/**
+	 * A single threat, with fields given as indices of the board.
+	 */
+	public static final class Threat {
+
+		private final Type type;
+		private final Player owner;
+		private final int[] stones;
+		private final int[] gains;
+		private final int[] defences;
+
+		private Threat(Type type, Player owner, int[] stones, int[] gains, int[] defences) {
+			this.type = type;
+			this.owner = owner;
+			this.stones = stones;
+			this.gains = gains;
+			this.defences = defences;
+		}
+
+		public Type type() {
+			return this.type;
+		}
+
+		public Player owner() {
+			return this.owner;
+		}
+
+		public int[] stones() {
+			return this.stones.clone();
+		}
+
+		/**
+		 * Returns the fields that make the threat stronger (a five for fours and a
+		 * straight four for threes).
+		 *
+		 * @return
+		 */
+		public int[] gains() {
+			return this.gains.clone();
+		}
+
+		/**
+		 * Returns the fields where the opponent can block the threat.
+		 *
+		 * @return
+		 */
+		public int[] defences() {
+			return this.defences.clone();
+		}
+	}
+
+	// MARK: - Properties
+
+	private final Igra game;
+	private final Layout layout;
+
+	/**
+	 * Encoded threats of each line and their numbers.
+	 */
+	private final long[][] threats;
+	private final int[] sizes;
+
+	/**
+	 * Numbers of threats, indexed by the owner and the type.
+	 */
+	private final int[][] counts;
+
+	// MARK: - Constructor
+
+	/**
+	 * Finds the threats of the @game. It has to be told about every move played or
+	 * undone in the game afterwards, see update().
+	 *
+	 * @param game
+	 */
+	public Threats(Igra game) {
+		this.game = game;
+		this.layout = game.layout();
+		this.threats = new long[this.layout.lines()][];
+		this.sizes = new int[this.layout.lines()];
+		this.counts = new int[Player.ALL.length][TYPES.length];
+
+		for (int l = 0; l < this.layout.lines(); l++) {
+			// Each empty field is a gain of at most one four and one three per player.
+			this.threats[l] = new long[4 * this.layout.lineLength(l)];
+			this.rescan(l);
+		}
+	}
+
+	// MARK: - Methods
+
+	/**
+	 * Scans again the lines through the field @move. To be called after the move
+	 * is played or undone.
+	 *
+	 * @param move
+	 */
+	public void update(int move) {
+		for (int d = 0; d < this.layout.directions().length; d++) {
+			int l = this.layout.line(d, move);
+			if (l >= 0)
+				this.rescan(l);
+		}
+	}
+
+	/**
+	 * Returns the number of threats of the given @type owned by the @owner.
+	 *
+	 * @param owner
+	 * @param type
+	 * @return
+	 */
+	public int count(Player owner, Type type) {
+		return this.counts[owner.ordinal()][type.ordinal()];
+	}
+
+	/**
+	 * Lists the threats owned by the @owner, from the strongest.
+	 *
+	 * @param owner
+	 * @return
+	 */
+	public List<Threat> threats(Player owner) {
+		List<Threat> list = new ArrayList<Threat>();
+		for (Type type : TYPES) {
+			for (int l = 0; l < this.sizes.length; l++) {
+				for (int i = 0; i < this.sizes[l]; i++) {
+					long code = this.threats[l][i];
+					if (owner(code) == owner && type(code) == type)
+						list.add(this.decode(code));
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Sets the gains of all threats of the given @type owned by the @owner in
+	 * @into, which is returned. Nothing is allocated.
+	 *
+	 * @param owner
+	 * @param type
+	 * @param into
+	 * @return
+	 */
+	public Bitboard gains(Player owner, Type type, Bitboard into) {
+		return this.fields(owner, type, 26, into);
+	}
+
+	/**
+	 * Sets the defences of all threats of the given @type owned by the @owner in
+	 * @into, which is returned. Nothing is allocated.
+	 *
+	 * @param owner
+	 * @param type
+	 * @param into
+	 * @return
+	 */
+	public Bitboard defences(Player owner, Type type, Bitboard into) {
+		return this.fields(owner, type, 34, into);
+	}
+
+	private Bitboard fields(Player owner, Type type, int shift, Bitboard into) {
+		into.clear();
+		if (this.count(owner, type) == 0)
+			return into;
+		for (int l = 0; l < this.sizes.length; l++) {
+			for (int i = 0; i < this.sizes[l]; i++) {
+				long code = this.threats[l][i];
+				if (owner(code) != owner || type(code) != type)
+					continue;
+				for (int m = this.mask(l, code, shift); m != 0; m &= m - 1) {
+					into.set(this.layout.lineField(l, Integer.numberOfTrailingZeros(m)));
+				}
+			}
+		}
+		return into;
+	}
+
+	private Threat decode(long code) {
+		int l = line(code);
+		return new Threat(type(code), owner(code), this.fields(l, mask(code, 18)), this.fields(l, mask(code, 26)),
+				this.fields(l, this.mask(l, code, 34)));
+	}
+
+	/**
+	 * Returns one of the masks of a threat on the line l, like mask(). Defences of
+	 * threes are not kept, but found from the line when they are asked for, since
+	 * the search only needs the gains of fours.
+	 */
+	private int mask(int l, long code, int shift) {
+		if (shift != 34 || type(code) != Type.THREE)
+			return mask(code, shift);
+		return this.threeDefences(mask(code, 18), this.game.line(owner(code), l), this.game.emptyLine(l));
+	}
+
+	/**
+	 * Converts a mask of positions on the line l to field indices.
+	 */
+	private int[] fields(int l, int mask) {
+		int[] fields = new int[Integer.bitCount(mask)];
+		for (int i = 0; mask != 0; mask &= mask - 1) {
+			fields[i++] = this.layout.lineField(l, Integer.numberOfTrailingZeros(mask));
+		}
+		return fields;
+	}
+
+	// MARK: - Scanning
+
+	private void rescan(int l) {
+		for (int i = 0; i < this.sizes[l]; i++) {
+			long code = this.threats[l][i];
+			this.counts[owner(code).ordinal()][type(code).ordinal()]--;
+		}
+		this.sizes[l] = 0;
+
+		int empties = this.game.emptyLine(l);
+		for (Player player : Player.ALL) {
+			int stones = this.game.line(player, l);
+			if (Integer.bitCount(stones) < 3)
+				continue;
+			// Fours need four stones.
+			int fours = (Integer.bitCount(stones) < 4) ? 0 : this.scanFours(l, player, stones, empties);
+			this.scanThrees(l, player, stones, empties, fours);
+		}
+	}
+
+	/**
+	 * Finds the fours of the @player on the line l and returns their gains.
+	 */
+	private int scanFours(int l, Player player, int stones, int empties) {
+		int all = 0;
+		int first = this.sizes[l];
+		for (int e = empties; e != 0; e &= e - 1) {
+			int gain = e & -e;
+			// Only fives through the gain count, in case the game is already won.
+			int fives = fives(stones | gain) & ~fives(stones);
+			if (fives == 0)
+				continue;
+			// The first five through the gain (there is only one, unless it is an
+			// overline).
+			int start = Integer.numberOfTrailingZeros(fives);
+			int four = (0x1F << start) & ~gain;
+			all |= gain;
+			this.add(l, first, Type.FOUR, player, four, gain);
+		}
+		// Fours with two gains are straight fours.
+		for (int i = first; i < this.sizes[l]; i++) {
+			long code = this.threats[l][i];
+			int gains = mask(code, 26);
+			if (Integer.bitCount(gains) == 2) {
+				this.counts[player.ordinal()][Type.FOUR.ordinal()]--;
+				this.counts[player.ordinal()][Type.STRAIGHT_FOUR.ordinal()]++;
+				this.threats[l][i] = encode(Type.STRAIGHT_FOUR, player, l, mask(code, 18), gains, 0);
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Finds the threes of the @player on the line l, skipping fields that are
+	 * already gains of @fours. Their defences are only found when they are asked
+	 * for, see mask().
+	 */
+	private void scanThrees(int l, Player player, int stones, int empties, int fours) {
+		int first = this.sizes[l];
+		for (int e = empties & ~fours; e != 0; e &= e - 1) {
+			int gain = e & -e;
+			int straight = straightFours(stones | gain, empties & ~gain);
+			int k = Integer.numberOfTrailingZeros(gain);
+			// Straight fours through the gain.
+			for (int s = straight & below(k + 1) & (-1 << Math.max(0, k - 3)); s != 0; s &= s - 1) {
+				int three = (0xF << Integer.numberOfTrailingZeros(s)) & ~gain;
+				this.add(l, first, Type.THREE, player, three, gain);
+			}
+		}
+	}
+
+	/**
+	 * Returns the empty fields that, taken by the opponent, leave no way to make a
+	 * straight four with the stones of the @three.
+	 */
+	private int threeDefences(int three, int stones, int empties) {
+		int low = Integer.numberOfTrailingZeros(three);
+		int high = 31 - Integer.numberOfLeadingZeros(three);
+		int span = below(high + 3) & (-1 << Math.max(0, low - 2));
+		int defences = 0;
+		for (int d = empties & span; d != 0; d &= d - 1) {
+			int defence = d & -d;
+			int left = empties & ~defence;
+			boolean blocked = true;
+			for (int e = left & span; e != 0 && blocked; e &= e - 1) {
+				int gain = e & -e;
+				for (int s = straightFours(stones | gain, left & ~gain); s != 0; s &= s - 1) {
+					int four = 0xF << Integer.numberOfTrailingZeros(s);
+					if ((four & (three | gain)) == (three | gain)) {
+						blocked = false;
+						break;
+					}
+				}
+			}
+			if (blocked)
+				defences |= defence;
+		}
+		return defences;
+	}
+
+	/**
+	 * Adds a gain to the threat of the given @stones on the line l, among the ones
+	 * from @first on, or adds a new threat.
+	 */
+	private void add(int l, int first, Type type, Player player, int stones, int gain) {
+		for (int i = first; i < this.sizes[l]; i++) {
+			long code = this.threats[l][i];
+			if (mask(code, 18) == stones) {
+				this.threats[l][i] = encode(type, player, l, stones, mask(code, 26) | gain, mask(code, 34) | gain);
+				return;
+			}
+		}
+		this.threats[l][this.sizes[l]++] = encode(type, player, l, stones, gain, gain);
+		this.counts[player.ordinal()][type.ordinal()]++;
+	}
+}
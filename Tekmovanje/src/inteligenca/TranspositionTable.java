@@ -0,0 +1,217 @@
+package inteligenca;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of results of searches, keyed by the hash of a position.
+ * An entry tells how deep the position was searched, whether the score is
+ * exact or only a bound, and the best move found, so a subtree searched once
+ * is not searched again, and when it is (deeper), its best move goes first.
+ * Memory is allocated once and never grows, however many games are played.
+ *
+ * An entry is packed into a single long:
+ *
+ * bits 0 - 31: score, bits 32 - 47: move + 1 (0 for none), bits 48 - 55: depth,
+ * bits 56 - 57: bound (0 for an empty entry), bits 58 - 63: age.
+ *
+ * An entry takes two longs, the data and the key XOR-ed with the data, and is
+ * only trusted if the two agree, so the table needs no locks: an entry torn by
+ * two threads writing at once is simply seen as a miss.
+ *
+ * Buckets have two entries. The first one keeps the deepest search of the
+ * current calculation: it is only replaced by an entry at least as deep, or if
+ * it was stored by an earlier calculation. Everything else goes to the second
+ * one, which is always replaced.
+ */
+
+public final class TranspositionTable {
+
+	// MARK: - Static
+
+	/**
+	 * Returned by probe() when the position is not in the table.
+	 */
+	public static final long NONE = 0;
+
+	/**
+	 * Bounds of a score: the true score is at most the score (the search failed
+	 * low), at least the score (it failed high), or equal to it.
+	 */
+	public static final int UPPER = 1;
+	public static final int LOWER = 2;
+	public static final int EXACT = 3;
+
+	private static final int MOVE_SHIFT = 32;
+	private static final int DEPTH_SHIFT = 48;
+	private static final int BOUND_SHIFT = 56;
+	private static final int AGE_SHIFT = 58;
+	private static final int AGES = 64;
+
+	// MARK: - Properties
+
+	/**
+	 * Entries, two longs each: the key XOR-ed with the data and the data.
+	 */
+	private final long[] entries;
+
+	/**
+	 * Number of buckets minus one; the number of buckets is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * Age of the current calculation.
+	 */
+	private volatile int age;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	// MARK: - Constructor
+
+	/**
+	 * Creates a table with room for at least @capacity entries. The capacity is
+	 * rounded up to a power of two; each entry takes 16 bytes.
+	 *
+	 * @param capacity
+	 */
+	public TranspositionTable(int capacity) {
+		int buckets = Integer.highestOneBit(Math.max(1, (capacity + 1) / 2 - 1)) << 1;
+		this.mask = buckets - 1;
+		this.entries = new long[4 * buckets];
+	}
+
+	// MARK: - Methods
+
+	/**
+	 * Returns the entry of the position with the @key, or NONE. The parts of the
+	 * entry are read with score(), move(), depth() and bound().
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long probe(long key) {
+		int bucket = this.bucket(key);
+		for (int i = bucket; i < bucket + 4; i += 2) {
+			long data = this.entries[i + 1];
+			if (data != NONE && (this.entries[i] ^ data) == key) {
+				this.hits.increment();
+				return data;
+			}
+		}
+		this.misses.increment();
+		return NONE;
+	}
+
+	/**
+	 * Stores the result of a search of the position with the @key.
+	 *
+	 * @param key
+	 * @param move  The best move, or -1 if there is none.
+	 * @param score
+	 * @param depth The remaining depth of the search.
+	 * @param bound UPPER, LOWER or EXACT.
+	 */
+	public void store(long key, int move, int score, int depth, int bound) {
+		int age = this.age;
+		int bucket = this.bucket(key);
+		long old = this.entries[bucket + 1];
+
+		// Keep the best move of an earlier search of the position, if this one found
+		// none.
+		if (move < 0) {
+			long same = this.probeQuietly(bucket, key);
+			if (same != NONE)
+				move = move(same);
+		}
+
+		long data = (score & 0xFFFFFFFFL) | ((long) (move + 1) << MOVE_SHIFT) | ((long) depth << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT) | ((long) age << AGE_SHIFT);
+
+		int i;
+		if (old == NONE || (this.entries[bucket] ^ old) == key || depth >= depth(old) || age(old) != age)
+			i = bucket;
+		else
+			i = bucket + 2;
+		this.entries[i] = key ^ data;
+		this.entries[i + 1] = data;
+	}
+
+	/**
+	 * Starts a new calculation. Entries of earlier calculations are kept, but are
+	 * replaced first.
+	 */
+	public void age() {
+		this.age = (this.age + 1) % AGES;
+	}
+
+	/**
+	 * Removes all entries and resets the counters.
+	 */
+	public void clear() {
+		Arrays.fill(this.entries, 0);
+		this.hits.reset();
+		this.misses.reset();
+	}
+
+	private int bucket(long key) {
+		return 4 * ((int) (key ^ (key >>> 32)) & this.mask);
+	}
+
+	private long probeQuietly(int bucket, long key) {
+		for (int i = bucket; i < bucket + 4; i += 2) {
+			long data = this.entries[i + 1];
+			if (data != NONE && (this.entries[i] ^ data) == key)
+				return data;
+		}
+		return NONE;
+	}
+
+	// MARK: - Entries
+
+	public static int score(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Returns the best move of the entry, or -1.
+	 *
+	 * @param entry
+	 * @return
+	 */
+	public static int move(long entry) {
+		return (int) ((entry >>> MOVE_SHIFT) & 0xFFFF) - 1;
+	}
+
+	public static int depth(long entry) {
+		return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+	}
+
+	public static int bound(long entry) {
+		return (int) ((entry >>> BOUND_SHIFT) & 0x3);
+	}
+
+	private static int age(long entry) {
+		return (int) (entry >>> AGE_SHIFT);
+	}
+
+	// MARK: - Accessors
+
+	/**
+	 * Returns the number of entries the table can hold.
+	 *
+	 * @return
+	 */
+	public int capacity() {
+		return this.entries.length / 2;
+	}
+
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	public long misses() {
+		return this.misses.sum();
+	}
+}
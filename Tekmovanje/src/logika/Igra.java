@@ -1,40 +1,77 @@
 package logika;
 
-import java.util.BitSet;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import splosno.Koordinati;
-
-import static util.Util.*;
+import util.Bitboard;
 
 public class Igra {
 
 	// MARK: - State
 
-	private BitSet blacks;
-	private BitSet whites;
-	private BitSet empties;
+	private Bitboard blacks;
+	private Bitboard whites;
+	private Bitboard empties;
 
 	/**
-	 * Safely retrieve (the clone of) the bitboard representing the @player's stones
+	 * Retrieve the bitboard representing the @player's stones. The bitboard is not
+	 * copied, so it must not be modified. Copy it into a scratch bitboard first.
 	 * 
 	 * @param player
 	 * 
 	 * @return
 	 */
-	public BitSet getBoard(Player player) {
+	public Bitboard getBoard(Player player) {
 		if (player == Player.Black) {
-			return (BitSet) this.blacks.clone();
+			return this.blacks;
 		}
-		return (BitSet) this.whites.clone();
+		return this.whites;
 	}
 
-	public BitSet getEmpties() {
-		return (BitSet) this.empties.clone();
+	/**
+	 * Retrieve the bitboard of empty fields. It must not be modified either.
+	 * 
+	 * @return
+	 */
+	public Bitboard getEmpties() {
+		return this.empties;
+	}
+
+	/**
+	 * Besides the bitboards, each line of the board (see Layout) is encoded as a
+	 * pair of ints, where the k-th bit tells whether the k-th field of the line is
+	 * taken by a black or a white stone. They are updated incrementally, four at a
+	 * time, so pattern recognition on a single line is a matter of a few integer
+	 * operations.
+	 */
+	private int[] blackLines;
+	private int[] whiteLines;
+
+	/**
+	 * Returns the encoding of the @player's stones on the line l.
+	 * 
+	 * @param player
+	 * @param l
+	 * @return
+	 */
+	public int line(Player player, int l) {
+		if (player == Player.Black)
+			return this.blackLines[l];
+		return this.whiteLines[l];
+	}
+
+	/**
+	 * Returns the encoding of the empty fields on the line l.
+	 * 
+	 * @param l
+	 * @return
+	 */
+	public int emptyLine(int l) {
+		int full = (int) ((1L << this.layout.lineLength(l)) - 1);
+		return full & ~(this.blackLines[l] | this.whiteLines[l]);
 	}
 
 	/**
@@ -51,6 +88,42 @@ public class Igra {
 		return this.size;
 	}
 
+	/**
+	 * Tells how the fields of the board map to the bits of the bitboards. Fields
+	 * are identified by their index in the layout throughout the game (in play(),
+	 * field(), candidates(), ...). Use index(), x() and y() to convert between
+	 * indices and coordinates.
+	 */
+	private Layout layout;
+
+	/**
+	 * Returns the layout of the board.
+	 * 
+	 * @return
+	 */
+	public Layout layout() {
+		return this.layout;
+	}
+
+	/**
+	 * Returns the index of the field (x, y).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int index(int x, int y) {
+		return this.layout.index(x, y);
+	}
+
+	public int x(int n) {
+		return this.layout.x(n);
+	}
+
+	public int y(int n) {
+		return this.layout.y(n);
+	}
+
 	/**
 	 * Player that is currently on the move.
 	 */
@@ -59,6 +132,12 @@ public class Igra {
 	public enum Player {
 		White, Black;
 
+		/**
+		 * All players, cached so that the evaluators do not copy values() in their
+		 * inner loops.
+		 */
+		public static final Player[] ALL = values();
+
 		/**
 		 * Returns the next player based on the current one.
 		 * 
@@ -81,85 +160,41 @@ public class Igra {
 		return this.player;
 	}
 
-	// MARK: - bitmasks
-
 	/**
-	 * Bitmasks to filter out irregular positions when checkin if the game is over.
-	 * In order to avoid calculating the masks at each turn, we store them as a
-	 * static final field.
+	 * The state of the game. It is computed in play() from the last move only, so
+	 * that reading it is free.
 	 */
-	private static final Map<Integer, BitSet> masks;
+	private GameState state;
 
-	// Initialize masks
-	static {
-		masks = new HashMap<Integer, BitSet>();
-		int[] inc = { 1, 14, 15, 16 };
-		for (int i : inc) {
-			masks.put(i, getMask(i, 5));
-		}
-	}
-
-	// MARK: - hashmap
+	// MARK: - hashing
 
 	/**
-	 * A custom static class for storing hash values
+	 * Seed of the Zobrist keys. It can be changed with the system property
+	 * gomoku.zobrist.seed. Hashes only depend on the seed, so they can be compared
+	 * across runs and stored in persistent caches.
 	 */
-	static class PairMovePlayer {
-
-		int move;
-		Player player;
-
-		protected PairMovePlayer(int move, Player player) {
-			this.move = move;
-			this.player = player;
-		}
-
-		/**
-		 * Since we intend to use pairMovePlayer object as keys in a HashMap, we have to
-		 * override the hashCode() and equals() methods.
-		 */
-		@Override
-		public int hashCode() {
-			int hash = this.move;
-			if (this.player == Player.Black)
-				hash = hash * 2;
-			return hash;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if (o == this)
-				return true;
-			if (!(o instanceof PairMovePlayer))
-				return false;
-			PairMovePlayer pair = (PairMovePlayer) o;
-			return this.move == pair.move && this.player == pair.player;
-		}
-	}
+	public static final long ZOBRIST_SEED = Long.getLong("gomoku.zobrist.seed", 0x9E3779B97F4A7C15L);
 
 	/**
 	 * Hashing is done incrementally using Zobrist's method. For each square on the
-	 * board and for each player, an unsigned 64-bit integer (long) is generated.
-	 * Thus, to update the game's hash, we simply XOR the last move's hash into it.
-	 * This ensures that the game's hash is determined solely by the stones on the
-	 * board and not by the order in which they were played. Since @hashmap is a
-	 * static field, all instances of the class Game, created during the same
-	 * session will calculate hash based on the same values. ? Does GUI use
-	 * multithreading? ? If so, does each thread operate with its own @hashmap? ?
-	 * Does this produce collisions?
-	 */
-	private static final Map<PairMovePlayer, Long> hashmap;
-
-	// Initialize hashmap
-	static {
-		hashmap = new HashMap<PairMovePlayer, Long>();
-		Random rand = new Random();
-		for (int i = 0; i < 225; i++) {
-			long hashBlack = Math.abs(rand.nextLong());
-			hashmap.put(new PairMovePlayer(i, Player.Black), hashBlack);
-			long hashWhite = Math.abs(rand.nextLong());
-			hashmap.put(new PairMovePlayer(i, Player.White), hashWhite);
-		}
+	 * board and for each player, a random 64-bit integer (long) is generated and
+	 * stored in the layout (see Layout.zobrist) of the board. To update
+	 * the game's hash, we simply XOR the last move's key into it. This ensures that
+	 * the game's hash is determined solely by the stones on the board and not by
+	 * the order in which they were played. Additionally, the @side key is XORed in
+	 * whenever White is on the move, so that the same stones with a different
+	 * player on the move hash differently.
+	 */
+	private static final long side = new SplittableRandom(ZOBRIST_SEED).nextLong();
+
+	/**
+	 * Returns the key that is XORed into the hash when the @player is on the move.
+	 * 
+	 * @param player
+	 * @return
+	 */
+	static long sideKey(Player player) {
+		return (player == Player.White) ? side : 0;
 	}
 
 	/**
@@ -178,25 +213,148 @@ public class Igra {
 		return this.hash;
 	}
 
+	/**
+	 * A position looks the same after any of the 8 rotations and reflections of the
+	 * board (see Layout.transform). We keep the hash of each of the 8 transformed
+	 * positions, updated incrementally like @hash (which equals symmetricHashes[0],
+	 * since transformation 0 is the identity).
+	 */
+	private long[] symmetricHashes;
+
+	/**
+	 * Returns the canonical hash of the position, i.e. the smallest of the hashes
+	 * of its 8 symmetric variants. Symmetric positions share the canonical hash, so
+	 * caches keyed by it share entries across rotations and reflections.
+	 * 
+	 * @return
+	 */
+	public long canonicalHash() {
+		return this.symmetricHashes[this.canonicalTransform()];
+	}
+
+	/**
+	 * Returns the transformation that maps this position to the canonical one. A
+	 * move n of this position is the move layout().transform(t, n) of the
+	 * canonical position, and a move m of the canonical position is the move
+	 * layout().transform(layout().inverse(t), m) here.
+	 * 
+	 * @return
+	 */
+	public int canonicalTransform() {
+		int best = 0;
+		for (int t = 1; t < this.symmetricHashes.length; t++) {
+			if (this.symmetricHashes[t] < this.symmetricHashes[best])
+				best = t;
+		}
+		return best;
+	}
+
 	// MARK: - candidates
 
 	/**
-	 * An additional data structure that thracks all empty fields on the board whose
-	 * distance (in any direction) to the nearest non-empty field is not greater
-	 * than one. @candidates are calculated incrementally. This is used to cut down
-	 * the branching factor in the game-tree.
+	 * Tells which empty fields count as candidates for the next move, based on
+	 * their position relative to the stones on the board:
+	 * 
+	 * - RADIUS_1: fields at distance (in any direction) at most one,
+	 * 
+	 * - RADIUS_2: fields at distance at most two,
+	 * 
+	 * - LINES: fields at most two steps away along the four lines through a stone,
+	 * i.e. the fields a stone can form a pattern with.
+	 * 
+	 * The neighbourhood of each field is precomputed as a bitmask in the layout.
 	 */
-	private Set<Integer> candidates;
+	public enum Neighbourhood {
+		RADIUS_1(1, false), RADIUS_2(2, false), LINES(2, true);
+
+		final int radius;
+		final boolean lines;
+
+		private Neighbourhood(int radius, boolean lines) {
+			this.radius = radius;
+			this.lines = lines;
+		}
+	}
+
+	private Neighbourhood neighbourhood;
+
+	/**
+	 * An additional data structure that thracks all empty fields on the board in
+	 * the @neighbourhood of some stone. @candidates are calculated incrementally,
+	 * by adding the neighbourhood of each move. This is used to cut down the
+	 * branching factor in the game-tree.
+	 */
+	private Bitboard candidates;
 
 	/**
-	 * Returns the set of candidates.
+	 * Returns the bitboard of candidates. It must not be modified. Iterate over it
+	 * with Bitboard.nextSetBit.
 	 * 
 	 * @return
 	 */
-	public Set<Integer> candidates() {
+	public Bitboard candidates() {
 		return this.candidates;
 	}
 
+	/**
+	 * Returns the neighbourhood used for candidates.
+	 * 
+	 * @return
+	 */
+	public Neighbourhood neighbourhood() {
+		return this.neighbourhood;
+	}
+
+	/**
+	 * Changes the neighbourhood used for candidates and recomputes them from the
+	 * stones on the board.
+	 * 
+	 * @param neighbourhood
+	 */
+	public void setNeighbourhood(Neighbourhood neighbourhood) {
+		this.neighbourhood = neighbourhood;
+		this.candidates.clear();
+		for (int i = 0; i < this.moves; i++) {
+			this.candidates.or(this.layout.neighbourhood(neighbourhood, this.history[i]));
+		}
+		this.candidates.and(this.empties);
+	}
+
+	// MARK: - history
+
+	/**
+	 * Moves played so far. Alongside each move, we store the @candidates from
+	 * before the move, so that undo() can restore them without recomputing
+	 * anything.
+	 */
+	private int[] history;
+	private Bitboard[] previousCandidates;
+
+	/**
+	 * Number of moves played so far.
+	 */
+	private int moves;
+
+	/**
+	 * Returns the number of moves played so far.
+	 * 
+	 * @return
+	 */
+	public int moves() {
+		return this.moves;
+	}
+
+	/**
+	 * Returns the last move played or -1 if the board is empty.
+	 * 
+	 * @return
+	 */
+	public int lastMove() {
+		if (this.moves == 0)
+			return -1;
+		return this.history[this.moves - 1];
+	}
+
 	// MARK: - Constructor
 
 	public Igra(Player starting, int size) {
@@ -207,19 +365,32 @@ public class Igra {
 		 * n-th square on the board is populated with a black stone) - empties is the
 		 * complement of bb and bw
 		 */
-		this.blacks = new BitSet(225);
-		this.whites = new BitSet(225);
-		this.empties = new BitSet(225);
+		this.size = size;
+		this.layout = Layout.of(size);
 
-		this.size = 15;
+		this.blacks = this.layout.board();
+		this.whites = this.layout.board();
+		this.empties = this.layout.board();
 
-		this.empties.set(0, 225); // bb and bw are initially empty, be is initially full.
+		this.empties.copy(this.layout.fields()); // bb and bw are initially empty, be is initially full.
+
+		this.blackLines = new int[this.layout.lines()];
+		this.whiteLines = new int[this.layout.lines()];
 
 		this.player = starting;
 
-		this.hash = 0;
+		this.hash = sideKey(starting);
+		this.symmetricHashes = new long[Layout.SYMMETRIES];
+		Arrays.fill(this.symmetricHashes, this.hash);
+
+		this.state = GameState.IN_PROGRESS;
 
-		this.candidates = new HashSet<Integer>();
+		this.neighbourhood = Neighbourhood.RADIUS_1;
+		this.candidates = this.layout.board();
+
+		this.history = new int[size * size];
+		this.previousCandidates = new Bitboard[size * size];
+		this.moves = 0;
 	}
 
 	public Igra() {
@@ -233,18 +404,33 @@ public class Igra {
 		/**
 		 * Constructor for cloning purposes
 		 */
-		this.blacks = (BitSet) game.blacks.clone();
-		this.whites = (BitSet) game.whites.clone();
-		this.empties = (BitSet) game.empties.clone();
+		this.blacks = new Bitboard(game.blacks);
+		this.whites = new Bitboard(game.whites);
+		this.empties = new Bitboard(game.empties);
+
+		this.blackLines = game.blackLines.clone();
+		this.whiteLines = game.whiteLines.clone();
 
 		this.size = game.size();
+		this.layout = game.layout();
 
 		this.player = game.player();
 
 		this.hash = game.hash();
+		this.symmetricHashes = game.symmetricHashes.clone();
 
-		// It is important to clone the set
-		this.candidates = new HashSet<Integer>(game.candidates());
+		this.state = game.state();
+
+		// It is important to copy the candidates
+		this.neighbourhood = game.neighbourhood();
+		this.candidates = new Bitboard(game.candidates());
+
+		this.history = game.history.clone();
+		this.previousCandidates = new Bitboard[game.previousCandidates.length];
+		for (int i = 0; i < game.moves; i++) {
+			this.previousCandidates[i] = new Bitboard(game.previousCandidates[i]);
+		}
+		this.moves = game.moves;
 	}
 
 	// MARK: - Field
@@ -270,21 +456,22 @@ public class Igra {
 	}
 
 	/**
-	 * Tells whether a move is valid. A move is valid if the field is still empty.
+	 * Tells whether a move is valid. A move is valid if the field is still empty
+	 * and the game is not over yet.
 	 * 
 	 * @return A boolean whether the move is valid.
 	 */
 	public boolean isValidMove(int n) {
 
-		if (n >= 225 || n < 0)
+		if (!this.layout.isField(n))
 			return false;
-		return this.validMoves().contains(n);
+		return this.state == GameState.IN_PROGRESS && this.empties.get(n);
 	}
 
 	/**
 	 * Use this function to get a list of valid moves in the game.
 	 * 
-	 * @return A list of valid moves. j
+	 * @return A list of valid moves.
 	 */
 	public Set<Integer> validMoves() {
 		Set<Integer> moves = new HashSet<Integer>();
@@ -292,15 +479,31 @@ public class Igra {
 		if (this.state() != GameState.IN_PROGRESS)
 			return moves;
 
-		int n = this.size() * this.size();
-		for (int i = 0; i < n; i++) {
-			if (this.empties.get(i))
-				moves.add(i);
-
+		for (int n = this.empties.nextSetBit(0); n >= 0; n = this.empties.nextSetBit(n + 1)) {
+			moves.add(n);
 		}
 		return moves;
 	}
 
+	/**
+	 * Stores valid moves into @moves, which has to have room for all the fields of
+	 * the board, and returns their number. Unlike validMoves(), this does not
+	 * allocate anything.
+	 * 
+	 * @param moves
+	 * @return The number of valid moves.
+	 */
+	public int validMoves(int[] moves) {
+		if (this.state() != GameState.IN_PROGRESS)
+			return 0;
+
+		int count = 0;
+		for (int n = this.empties.nextSetBit(0); n >= 0; n = this.empties.nextSetBit(n + 1)) {
+			moves[count++] = n;
+		}
+		return count;
+	}
+
 	// MARK: - Play
 
 	/**
@@ -312,6 +515,16 @@ public class Igra {
 		if (!this.isValidMove(move))
 			return false;
 
+		this.make(move);
+		return true;
+	}
+
+	/**
+	 * Places a stone on the board without checking that the move is valid.
+	 * 
+	 * @param move
+	 */
+	void make(int move) {
 		// Update the board.
 //		System.out.println(move + " played " + this.player);
 		if (this.player == Player.Black)
@@ -321,68 +534,103 @@ public class Igra {
 
 		// Clear the complement.
 		this.empties.clear(move);
+		// Update the lines through the move
+		this.updateLines(move, this.player);
 		// Update hash
-		this.hash = this.hash ^ hashmap.get(new PairMovePlayer(move, this.player()));
-		// Update candidates
+		this.updateHash(move, this.player);
+		// Remember the candidates and update them
+		if (this.previousCandidates[this.moves] == null)
+			this.previousCandidates[this.moves] = this.layout.board();
+		this.previousCandidates[this.moves].copy(this.candidates);
 		this.updateCandidates(move);
+		this.history[this.moves] = move;
+		this.moves++;
+
+		// Update the state. Only lines through the last move could have changed it.
+		if (this.isFive(move, this.player))
+			this.state = (this.player == Player.Black) ? GameState.WIN_Black : GameState.WIN_White;
+		else if (this.empties.isEmpty())
+			this.state = GameState.DRAW;
 
 		// Update the player.
 		this.player = this.player.next();
+	}
+
+	/**
+	 * Takes back the last move. The board, hash, player, candidates and state are
+	 * restored from the history in constant time.
+	 * 
+	 * @return Whether there was a move to take back.
+	 */
+	public boolean undo() {
+		if (this.moves == 0)
+			return false;
+
+		this.moves--;
+		int move = this.history[this.moves];
+
+		// The player who made the move is on turn again.
+		this.player = this.player.next();
+
+		// Update the board.
+		if (this.player == Player.Black)
+			this.blacks.clear(move);
+		else
+			this.whites.clear(move);
+		this.empties.set(move);
+		this.updateLines(move, this.player);
+
+		// Update hash
+		this.updateHash(move, this.player);
+
+		// Restore candidates
+		this.candidates.copy(this.previousCandidates[this.moves]);
+
+		// A move can only be played in a game in progress.
+		this.state = GameState.IN_PROGRESS;
 		return true;
 	}
 
 	/**
-	 * Incrementally updating the set of candidates after a move is played.
+	 * XORs the key of the @player's stone at @move into the hash and into each of
+	 * the symmetric hashes (at the transformed field), together with the key of the
+	 * player on the move.
+	 * 
+	 * @param move
+	 * @param player
+	 */
+	private void updateHash(int move, Player player) {
+		this.hash = this.hash ^ this.layout.zobrist(player, move) ^ side;
+		for (int t = 0; t < this.symmetricHashes.length; t++) {
+			int n = this.layout.transform(t, move);
+			this.symmetricHashes[t] = this.symmetricHashes[t] ^ this.layout.zobrist(player, n) ^ side;
+		}
+	}
+
+	/**
+	 * Flips the @player's bit of the field @move in the four lines through it.
+	 * 
+	 * @param move
+	 * @param player
+	 */
+	private void updateLines(int move, Player player) {
+		int[] lines = (player == Player.Black) ? this.blackLines : this.whiteLines;
+		for (int d = 0; d < 4; d++) {
+			int l = this.layout.line(d, move);
+			if (l >= 0)
+				lines[l] ^= 1 << this.layout.position(d, move);
+		}
+	}
+
+	/**
+	 * Incrementally updating the set of candidates after a move is played. The
+	 * neighbourhood of the move is added and the occupied fields are removed.
 	 * 
 	 * @param move
 	 */
 	private void updateCandidates(int move) {
-		this.candidates.remove(move);
-		// Search two steps in all eight directions
-		// Horisontally
-		int horD = move % 15; // Space in the decreasing (D) horisontal (hor) direction
-		if (horD > 0 & isValidMove(move - 1))
-			this.candidates.add(move - 1);
-		// if (horD > 1 & isValidMove(move - 2))
-		// this.candidates.add(move - 2);
-		int horI = 14 - horD;
-		if (horI > 0 & isValidMove(move + 1))
-			this.candidates.add(move + 1);
-		// if (horI > 1 & isValidMove(move + 2))
-		// this.candidates.add(move + 2);
-		// Vertically
-		int verD = move / 15;
-		if (verD > 0 & isValidMove(move - 15))
-			this.candidates.add(move - 15);
-		// if (verD > 1 & isValidMove(move - 2 * 15))
-		// this.candidates.add(move - 2 * 15);
-		int verI = 14 - verD;
-		if (verI > 0 & isValidMove(move + 15))
-			this.candidates.add(move + 15);
-		// if (verI > 1 & isValidMove(move + 2 * 15))
-		// this.candidates.add(move + 2 * 15);
-		// On the diagonal
-		int diagD = Math.min(horI, verD);
-		if (diagD > 0 & isValidMove(move - 14))
-			this.candidates.add(move - 14);
-		// if (diagD > 1 & isValidMove(move - 2 * 14))
-		// this.candidates.add(move - 2 * 14);
-		int diagI = Math.min(horD, verI);
-		if (diagI > 0 & isValidMove(move + 14))
-			this.candidates.add(move + 14);
-		// if (diagI > 1 & isValidMove(move + 2 * 14))
-		// this.candidates.add(move + 2 * 14);
-		// On the counterdiagonal
-		int counterdiagD = Math.min(horD, verD);
-		if (counterdiagD > 0 & isValidMove(move - 16))
-			this.candidates.add(move - 16);
-		// if (counterdiagD > 1 & isValidMove(move - 2 * 16))
-		// this.candidates.add(move - 2 * 16);
-		int counterdiagI = Math.min(horI, verI);
-		if (counterdiagI > 0 & isValidMove(move + 16))
-			this.candidates.add(move + 16);
-		// if (counterdiagI > 1 & isValidMove(move + 2 * 16))
-		// this.candidates.add(move + 2 * 16);
+		this.candidates.or(this.layout.neighbourhood(this.neighbourhood, move));
+		this.candidates.and(this.empties);
 	}
 
 	/**
@@ -393,7 +641,11 @@ public class Igra {
 	 * @return
 	 */
 	public boolean odigraj(Koordinati coord) {
-		return this.play(coord.getY() * this.size + coord.getX());
+		int x = coord.getX();
+		int y = coord.getY();
+		if (x < 0 || x >= this.size || y < 0 || y >= this.size)
+			return false;
+		return this.play(this.index(x, y));
 	}
 
 	// MARK: - State
@@ -429,64 +681,81 @@ public class Igra {
 	 * @return Winner, draw or in_progress.
 	 */
 	public GameState state() {
-		if (this.hasWon(Player.Black))
-			return GameState.WIN_Black;
-		
-		if (this.hasWon(Player.White))
-			return GameState.WIN_White;
-		
-		if (empties.isEmpty())
-			return GameState.DRAW;
-		
-		return GameState.IN_PROGRESS;
+		return this.state;
+	}
+
+	/**
+	 * Computes the state of the game from the whole board. This is only needed
+	 * when stones were placed by make(), which might have passed a five.
+	 */
+	void updateState() {
+		this.state = GameState.IN_PROGRESS;
+		for (int n = this.blacks.nextSetBit(0); n >= 0; n = this.blacks.nextSetBit(n + 1)) {
+			if (this.isFive(n, Player.Black))
+				this.state = GameState.WIN_Black;
+		}
+		for (int n = this.whites.nextSetBit(0); n >= 0; n = this.whites.nextSetBit(n + 1)) {
+			if (this.isFive(n, Player.White))
+				this.state = GameState.WIN_White;
+		}
+		if (this.state == GameState.IN_PROGRESS && this.empties.isEmpty())
+			this.state = GameState.DRAW;
 	}
 
 	/**
-	 * Checks whether the player has a continuous string of five or more set bits.
+	 * Checks whether the stone at @move is a part of a continuous string of five or
+	 * more stones of the @player. Only the four lines through the move are
+	 * checked, each with a handful of shifts of its encoding.
 	 * 
 	 * @return boolean
 	 */
-	private boolean hasWon(Player player) {
-		int[] inc = { 1, 14, 15, 16 }; // directions
-		for (int i : inc) {
-			// Select the appropriate bitboard and clone it
-			BitSet stones = this.getBoard(player);
-			// Shift left four times
-			BitSet shifted1 = shl(stones, i);
-			BitSet shifted2 = shl(shifted1, i);
-			BitSet shifted3 = shl(shifted2, i);
-			BitSet shifted4 = shl(shifted3, i);
-			// AND all five boards togeather
-			stones.and(shifted1);
-			stones.and(shifted2);
-			stones.and(shifted3);
-			stones.and(shifted4);
-			BitSet mask = masks.get(i); // Retrieve the appropriate mask
-			stones.and(mask); // Apply it
-			if (!stones.isEmpty())
+	private boolean isFive(int move, Player player) {
+		for (int d = 0; d < 4; d++) {
+			int l = this.layout.line(d, move);
+			if (l < 0)
+				continue;
+			int stones = this.line(player, l);
+			// Twos, fours and then fives, marked by their first stone
+			stones &= stones >>> 1;
+			stones &= stones >>> 2;
+			stones &= stones >>> 1;
+			if (stones != 0)
 				return true;
 		}
 		return false;
 	}
 
+	// MARK: - Snapshot
+
+	/**
+	 * Returns a compact, immutable snapshot of the position.
+	 * 
+	 * @return
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
 	// MARK: - Overrides
 
 	@Override
 	public String toString() {
-		String str = "0 1 2 3 4 5 6 7 8 9 10 11 12 13 14 \n";
-		int row = 0;
-		for (int i = 0; i < 225; i++) {
-			if (this.blacks.get(i))
-				str = str + "X ";
-			else if (this.whites.get(i))
-				str = str + "O ";
-			else
-				str = str + "_ ";
-			if (i % 15 == 14) {
-				str = str + " " + String.valueOf(row) + "\n";
-				row++;
+		String str = "";
+		for (int x = 0; x < this.size; x++) {
+			str = str + String.valueOf(x) + " ";
+		}
+		str = str + "\n";
+		for (int y = 0; y < this.size; y++) {
+			for (int x = 0; x < this.size; x++) {
+				int n = this.index(x, y);
+				if (this.blacks.get(n))
+					str = str + "X ";
+				else if (this.whites.get(n))
+					str = str + "O ";
+				else
+					str = str + "_ ";
 			}
-
+			str = str + " " + String.valueOf(y) + "\n";
 		}
 		return str;
 	}
@@ -0,0 +1,451 @@
+package logika;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import logika.Igra.Neighbourhood;
+import logika.Igra.Player;
+import util.Bitboard;
+
+/**
+ * Describes how the fields of a board of a given size are laid out in a
+ * bitboard. Each row of the board is followed by a single padding column, which
+ * is never set:
+ *
+ * X X X X X X X X X X X X X X X .
+ * X X X X X X X X X X X X X X X .
+ * ...
+ *
+ * Thus, the field (x, y) is stored at the bit y * stride + x, where stride is
+ * size + 1. Patterns are searched for by shifting the board by one of the four
+ * directions (1, stride - 1, stride, stride + 1). A pattern which would wrap
+ * around the edge of the board runs through the padding column (or past the end
+ * of the bitboard), where neither stones nor empty fields are set, so no masks
+ * are needed to filter out irregular positions.
+ *
+ * Besides bits, the layout also numbers the lines of the board: rows, columns
+ * and both kinds of diagonals that are long enough to hold five in a row (72 on
+ * a 15x15 board). Each field knows the line it lies on in each direction and
+ * its position on that line, so a game can keep a compact encoding of every
+ * line (see Igra.line) and update only the four lines through a move.
+ *
+ * Layouts are immutable and shared between all games of the same size, together
+ * with the masks and keys that are precomputed for them. Since lines are
+ * encoded as ints, boards are at most 32 fields wide.
+ */
+
+public final class Layout {
+
+	// MARK: - Static
+
+	/**
+	 * Number of symmetries of the board (rotations and reflections).
+	 */
+	public static final int SYMMETRIES = 8;
+
+	/**
+	 * Sizes of the smallest board that holds five in a row, and of the largest
+	 * board whose lines fit in an int.
+	 */
+	public static final int MIN_SIZE = 5;
+	public static final int MAX_SIZE = 32;
+
+	/**
+	 * Layouts that have already been computed, indexed by size.
+	 */
+	private static final Layout[] layouts = new Layout[MAX_SIZE + 1];
+
+	/**
+	 * Returns the layout of a board with the given size.
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static synchronized Layout of(int size) {
+		if (size < MIN_SIZE || size > MAX_SIZE)
+			throw new IllegalArgumentException("Unsupported board size: " + size);
+		if (layouts[size] == null)
+			layouts[size] = new Layout(size);
+		return layouts[size];
+	}
+
+	// MARK: - Properties
+
+	/**
+	 * Number of fields in a row and column.
+	 */
+	private final int size;
+
+	/**
+	 * Distance between two vertically adjacent fields.
+	 */
+	private final int stride;
+
+	/**
+	 * Number of bits in a bitboard, including the padding.
+	 */
+	private final int bits;
+
+	/**
+	 * Increments representing the four search-directions: horisontal, diagonal
+	 * (down and left), vertical and counterdiagonal (down and right).
+	 */
+	private final int[] directions;
+
+	/**
+	 * A mask of all the fields, i.e. the bitboard without the padding.
+	 */
+	private final Bitboard fields;
+
+	/**
+	 * Neighbourhoods of each field, indexed by the neighbourhood and the field.
+	 */
+	private final Bitboard[][] neighbourhoods;
+
+	/**
+	 * Zobrist keys of each field, indexed by the player and the field.
+	 */
+	private final long[][] zobrist;
+
+	/**
+	 * The line through each field in each direction and the position of the field
+	 * on it, indexed by the direction and the field. Fields on diagonals shorter
+	 * than five lie on no line (-1) in that direction.
+	 */
+	private final int[][] lineOf;
+	private final int[][] positionOf;
+
+	/**
+	 * The first field, the direction and the length of each line.
+	 */
+	private final int[] lineStart;
+	private final int[] lineDirection;
+	private final int[] lineLength;
+
+	/**
+	 * The image of each field under each symmetry, and the inverse of each
+	 * symmetry.
+	 */
+	private final int[][] transforms;
+	private final int[] inverses;
+
+	// MARK: - Constructor
+
+	private Layout(int size) {
+		this.size = size;
+		this.stride = size + 1;
+		this.bits = size * this.stride;
+		this.directions = new int[] { 1, this.stride - 1, this.stride, this.stride + 1 };
+
+		this.fields = new Bitboard(this.bits);
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				this.fields.set(this.index(x, y));
+			}
+		}
+
+		Neighbourhood[] kinds = Neighbourhood.values();
+		this.neighbourhoods = new Bitboard[kinds.length][];
+		for (Neighbourhood kind : kinds) {
+			this.neighbourhoods[kind.ordinal()] = this.neighbourhoods(kind.radius, kind.lines);
+		}
+
+		// Lines
+		this.lineOf = new int[this.directions.length][this.bits];
+		this.positionOf = new int[this.directions.length][this.bits];
+		int[] start = new int[4 * size * 2];
+		int[] direction = new int[start.length];
+		int[] length = new int[start.length];
+		int lines = 0;
+		int[][] steps = { { 1, 0 }, { -1, 1 }, { 0, 1 }, { 1, 1 } }; // Same order as @directions
+		for (int d = 0; d < steps.length; d++) {
+			Arrays.fill(this.lineOf[d], -1);
+			for (int n = 0; n < this.bits; n++) {
+				if (!this.isField(n))
+					continue;
+				int dx = steps[d][0];
+				int dy = steps[d][1];
+				// Lines start at fields whose predecessor is off the board.
+				if (this.isOnBoard(this.x(n) - dx, this.y(n) - dy))
+					continue;
+				int len = 0;
+				while (this.isOnBoard(this.x(n) + len * dx, this.y(n) + len * dy)) {
+					len++;
+				}
+				if (len < 5)
+					continue;
+				for (int k = 0; k < len; k++) {
+					int m = n + k * this.directions[d];
+					this.lineOf[d][m] = lines;
+					this.positionOf[d][m] = k;
+				}
+				start[lines] = n;
+				direction[lines] = d;
+				length[lines] = len;
+				lines++;
+			}
+		}
+		this.lineStart = Arrays.copyOf(start, lines);
+		this.lineDirection = Arrays.copyOf(direction, lines);
+		this.lineLength = Arrays.copyOf(length, lines);
+
+		// Symmetries
+		this.transforms = new int[SYMMETRIES][this.bits];
+		for (int t = 0; t < SYMMETRIES; t++) {
+			for (int n = 0; n < this.bits; n++) {
+				this.transforms[t][n] = this.isField(n) ? this.transform(t, this.x(n), this.y(n)) : n;
+			}
+		}
+		this.inverses = new int[SYMMETRIES];
+		for (int t = 0; t < SYMMETRIES; t++) {
+			for (int u = 0; u < SYMMETRIES; u++) {
+				// Any field off the diagonals tells the symmetries apart.
+				int n = this.index(1, 0);
+				if (this.transforms[u][this.transforms[t][n]] == n)
+					this.inverses[t] = u;
+			}
+		}
+
+		// Keys depend on the seed and the size only, so they are reproducible.
+		SplittableRandom rand = new SplittableRandom(Igra.ZOBRIST_SEED + size);
+		this.zobrist = new long[Player.values().length][this.bits];
+		for (long[] keys : this.zobrist) {
+			for (int n = 0; n < keys.length; n++) {
+				keys[n] = rand.nextLong();
+			}
+		}
+	}
+
+	/**
+	 * Computes the neighbourhood masks of all fields.
+	 */
+	private Bitboard[] neighbourhoods(int radius, boolean lines) {
+		Bitboard[] masks = new Bitboard[this.bits];
+		for (int n = 0; n < this.bits; n++) {
+			masks[n] = new Bitboard(this.bits);
+			if (!this.isField(n))
+				continue;
+			for (int dy = -radius; dy <= radius; dy++) {
+				for (int dx = -radius; dx <= radius; dx++) {
+					int x = this.x(n) + dx;
+					int y = this.y(n) + dy;
+					boolean onLine = dx == 0 || dy == 0 || Math.abs(dx) == Math.abs(dy);
+					if (x < 0 || x >= this.size || y < 0 || y >= this.size || (lines && !onLine))
+						continue;
+					masks[n].set(this.index(x, y));
+				}
+			}
+		}
+		return masks;
+	}
+
+	// MARK: - Accessors
+
+	public int size() {
+		return this.size;
+	}
+
+	public int stride() {
+		return this.stride;
+	}
+
+	/**
+	 * Returns the number of bits of a bitboard. All field indices are below it.
+	 *
+	 * @return
+	 */
+	public int bits() {
+		return this.bits;
+	}
+
+	/**
+	 * Returns the increments of the four search-directions. The array must not be
+	 * modified.
+	 *
+	 * @return
+	 */
+	public int[] directions() {
+		return this.directions;
+	}
+
+	/**
+	 * Returns the mask of all the fields. It must not be modified.
+	 *
+	 * @return
+	 */
+	public Bitboard fields() {
+		return this.fields;
+	}
+
+	/**
+	 * Returns the neighbourhood of the field n. It must not be modified.
+	 *
+	 * @param kind
+	 * @param n
+	 * @return
+	 */
+	public Bitboard neighbourhood(Neighbourhood kind, int n) {
+		return this.neighbourhoods[kind.ordinal()][n];
+	}
+
+	/**
+	 * Returns the Zobrist key of a @player's stone at the field n.
+	 *
+	 * @param player
+	 * @param n
+	 * @return
+	 */
+	public long zobrist(Player player, int n) {
+		return this.zobrist[player.ordinal()][n];
+	}
+
+	// MARK: - Lines
+
+	/**
+	 * Returns the number of lines on the board.
+	 *
+	 * @return
+	 */
+	public int lines() {
+		return this.lineStart.length;
+	}
+
+	/**
+	 * Returns the line through the field n in the direction d (an index into
+	 * directions()), or -1 if the field lies on no line in that direction.
+	 *
+	 * @param d
+	 * @param n
+	 * @return
+	 */
+	public int line(int d, int n) {
+		return this.lineOf[d][n];
+	}
+
+	/**
+	 * Returns the position of the field n on its line in the direction d.
+	 *
+	 * @param d
+	 * @param n
+	 * @return
+	 */
+	public int position(int d, int n) {
+		return this.positionOf[d][n];
+	}
+
+	/**
+	 * Returns the number of fields on the line l.
+	 *
+	 * @param l
+	 * @return
+	 */
+	public int lineLength(int l) {
+		return this.lineLength[l];
+	}
+
+	/**
+	 * Returns the direction (an index into directions()) of the line l.
+	 *
+	 * @param l
+	 * @return
+	 */
+	public int lineDirection(int l) {
+		return this.lineDirection[l];
+	}
+
+	/**
+	 * Returns the field at the position k of the line l.
+	 *
+	 * @param l
+	 * @param k
+	 * @return
+	 */
+	public int lineField(int l, int k) {
+		return this.lineStart[l] + k * this.directions[this.lineDirection[l]];
+	}
+
+	// MARK: - Symmetries
+
+	/**
+	 * Returns the image of the field n under the symmetry t. The bits of t tell
+	 * which of the following are applied, in this order: 1 transposes the board
+	 * (swaps x and y), 2 mirrors x and 4 mirrors y. Symmetry 0 is the identity.
+	 *
+	 * @param t
+	 * @param n
+	 * @return
+	 */
+	public int transform(int t, int n) {
+		return this.transforms[t][n];
+	}
+
+	/**
+	 * Returns the symmetry that undoes the symmetry t.
+	 *
+	 * @param t
+	 * @return
+	 */
+	public int inverse(int t) {
+		return this.inverses[t];
+	}
+
+	private int transform(int t, int x, int y) {
+		if ((t & 1) != 0) {
+			int z = x;
+			x = y;
+			y = z;
+		}
+		if ((t & 2) != 0)
+			x = this.size - 1 - x;
+		if ((t & 4) != 0)
+			y = this.size - 1 - y;
+		return this.index(x, y);
+	}
+
+	// MARK: - Indices
+
+	/**
+	 * Returns the index of the field (x, y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int index(int x, int y) {
+		return y * this.stride + x;
+	}
+
+	public int x(int n) {
+		return n % this.stride;
+	}
+
+	public int y(int n) {
+		return n / this.stride;
+	}
+
+	/**
+	 * Tells whether n is the index of a field on the board (and not of padding).
+	 *
+	 * @param n
+	 * @return
+	 */
+	public boolean isField(int n) {
+		return n >= 0 && n < this.bits && n % this.stride != this.size;
+	}
+
+	/**
+	 * Tells whether (x, y) is on the board.
+	 */
+	private boolean isOnBoard(int x, int y) {
+		return x >= 0 && x < this.size && y >= 0 && y < this.size;
+	}
+
+	/**
+	 * Creates an empty bitboard for this layout.
+	 *
+	 * @return
+	 */
+	public Bitboard board() {
+		return new Bitboard(this.bits);
+	}
+}
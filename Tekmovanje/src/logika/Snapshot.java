@@ -0,0 +1,268 @@
+package logika;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import logika.Igra.Field;
+import logika.Igra.Player;
+import util.Bitboard;
+
+/**
+ * A compact, immutable snapshot of a position. It is meant to be used as a key
+ * or a value in large collections of positions (caches, opening books, data
+ * sets), where keeping a whole Igra for each position would be far too heavy.
+ *
+ * Each field takes two bits (01 for a black stone, 10 for a white one), packed
+ * row by row without padding, so a 15x15 position fits in 8 longs. Together
+ * with the player on the move and the hash of the position, that is about 64
+ * bytes.
+ */
+
+public final class Snapshot {
+
+	// MARK: - Properties
+
+	private final int size;
+	private final Player player;
+	private final long hash;
+	private final long[] fields;
+
+	// MARK: - Constructor
+
+	/**
+	 * Takes a snapshot of the game. Use Igra.snapshot().
+	 *
+	 * @param game
+	 */
+	Snapshot(Igra game) {
+		this.size = game.size();
+		this.player = game.player();
+		this.hash = game.hash();
+		this.fields = new long[words(this.size)];
+
+		this.pack(game.getBoard(Player.Black), game.layout(), 0);
+		this.pack(game.getBoard(Player.White), game.layout(), 1);
+	}
+
+	private Snapshot(int size, Player player, long hash, long[] fields) {
+		this.size = size;
+		this.player = player;
+		this.hash = hash;
+		this.fields = fields;
+	}
+
+	/**
+	 * Number of longs needed to store the fields of a board.
+	 */
+	private static int words(int size) {
+		return (2 * size * size + 63) >>> 6;
+	}
+
+	/**
+	 * Sets the bit @color (0 for black and 1 for white) of each field taken by
+	 * @stones.
+	 */
+	private void pack(Bitboard stones, Layout layout, int color) {
+		for (int n = stones.nextSetBit(0); n >= 0; n = stones.nextSetBit(n + 1)) {
+			int i = 2 * (layout.y(n) * this.size + layout.x(n)) + color;
+			this.fields[i >>> 6] |= 1L << i;
+		}
+	}
+
+	// MARK: - Accessors
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the player that is on the move.
+	 *
+	 * @return
+	 */
+	public Player player() {
+		return this.player;
+	}
+
+	/**
+	 * Returns the hash of the position, as given by Igra.hash().
+	 *
+	 * @return
+	 */
+	public long hash() {
+		return this.hash;
+	}
+
+	/**
+	 * Returns information about the value of the field (x, y).
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public Field field(int x, int y) {
+		int i = 2 * (y * this.size + x);
+		int bits = (int) (this.fields[i >>> 6] >>> (i & 63)) & 3;
+		return switch (bits) {
+		case 0 -> Field.EMPTY;
+		case 1 -> Field.Black;
+		case 2 -> Field.White;
+		default -> throw new IllegalStateException("Field with stones of both players.");
+		};
+	}
+
+	// MARK: - Conversion
+
+	/**
+	 * Creates a game with the position of the snapshot. Stones are placed in turns,
+	 * so the game can be undone move by move down to the empty board, though not
+	 * necessarily in the order the stones were originally played.
+	 *
+	 * @return
+	 * @throws IllegalStateException if the numbers of stones do not match the
+	 *                               player on the move.
+	 */
+	public Igra toGame() {
+		int[] blacks = new int[this.size * this.size];
+		int[] whites = new int[this.size * this.size];
+		int b = 0;
+		int w = 0;
+		Layout layout = Layout.of(this.size);
+		for (int y = 0; y < this.size; y++) {
+			for (int x = 0; x < this.size; x++) {
+				switch (this.field(x, y)) {
+				case Black -> blacks[b++] = layout.index(x, y);
+				case White -> whites[w++] = layout.index(x, y);
+				case EMPTY -> {
+				}
+				}
+			}
+		}
+
+		// The player who started is the one with more stones, or the one on the move.
+		Player starting;
+		if (b == w)
+			starting = this.player;
+		else if (b == w + 1 && this.player == Player.White)
+			starting = Player.Black;
+		else if (w == b + 1 && this.player == Player.Black)
+			starting = Player.White;
+		else
+			throw new IllegalStateException("Numbers of stones do not match the player on the move.");
+
+		int[] first = (starting == Player.Black) ? blacks : whites;
+		int[] second = (starting == Player.Black) ? whites : blacks;
+		Igra game = new Igra(starting, this.size);
+		for (int i = 0; i < b + w; i++) {
+			game.make((i % 2 == 0) ? first[i / 2] : second[i / 2]);
+		}
+		game.updateState();
+		return game;
+	}
+
+	// MARK: - Storage
+
+	/**
+	 * Writes the snapshot in a binary form.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(this.size);
+		out.writeByte(this.player.ordinal());
+		out.writeLong(this.hash);
+		for (long word : this.fields) {
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by write().
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException If the input ends, or holds anything no snapshot has: a
+	 *                     size of the board or a player that does not exist, a
+	 *                     field with stones of both players, bits past the last
+	 *                     field, numbers of stones that do not match the player
+	 *                     on the move, or a hash of another position.
+	 */
+	public static Snapshot read(DataInput in) throws IOException {
+		int size = in.readUnsignedByte();
+		if (size < Layout.MIN_SIZE || size > Layout.MAX_SIZE)
+			throw new IOException("Malformed size: " + size);
+		int ordinal = in.readUnsignedByte();
+		if (ordinal >= Player.ALL.length)
+			throw new IOException("Malformed player: " + ordinal);
+		Player player = Player.ALL[ordinal];
+		long hash = in.readLong();
+		long[] fields = new long[words(size)];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = in.readLong();
+		}
+
+		Snapshot snapshot = new Snapshot(size, player, hash, fields);
+		String malformed = snapshot.validate();
+		if (malformed != null)
+			throw new IOException("Malformed snapshot: " + malformed);
+		return snapshot;
+	}
+
+	/**
+	 * Returns what is wrong with the fields of a snapshot that was read, or null
+	 * if it is a position Igra.snapshot() could have taken. The hash is computed
+	 * again from the stones, as in Igra.
+	 */
+	private String validate() {
+		int bits = 2 * this.size * this.size;
+		Layout layout = Layout.of(this.size);
+		long hash = Igra.sideKey(this.player);
+		int blacks = 0;
+		int whites = 0;
+		for (int w = 0; w < this.fields.length; w++) {
+			long word = this.fields[w];
+			if ((word & word >>> 1 & 0x5555555555555555L) != 0)
+				return "field with stones of both players";
+			if (w == this.fields.length - 1 && (bits & 63) != 0 && word >>> (bits & 63) != 0)
+				return "bits past the last field";
+			for (long m = word; m != 0; m &= m - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(m);
+				int f = i >>> 1;
+				Player color = ((i & 1) == 0) ? Player.Black : Player.White;
+				hash ^= layout.zobrist(color, layout.index(f % this.size, f / this.size));
+				if (color == Player.Black)
+					blacks++;
+				else
+					whites++;
+			}
+		}
+		if (blacks != whites && !(blacks == whites + 1 && this.player == Player.White)
+				&& !(whites == blacks + 1 && this.player == Player.Black))
+			return "numbers of stones do not match the player on the move";
+		if (hash != this.hash)
+			return "hash of another position";
+		return null;
+	}
+
+	// MARK: - Overrides
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof Snapshot))
+			return false;
+		Snapshot snapshot = (Snapshot) o;
+		// Hashes differ for almost all different positions, so compare them first.
+		return this.hash == snapshot.hash && this.size == snapshot.size && this.player == snapshot.player
+				&& Arrays.equals(this.fields, snapshot.fields);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (this.hash ^ (this.hash >>> 32));
+	}
+}
@@ -0,0 +1,89 @@
+package tuning;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+
+import logika.Igra.GameState;
+import logika.Snapshot;
+
+/**
+ * The binary format of a set of labelled positions. Each record is a snapshot
+ * of a position (see Snapshot.write) followed by a byte with the outcome of the
+ * game it was taken from: 2 if black won, 1 for a draw and 0 if white won.
+ * Records are simply concatenated, so sets can be joined with cat and are read
+ * one record at a time, without loading the whole file.
+ */
+
+public final class Dataset {
+
+	private Dataset() {
+	}
+
+	/**
+	 * Writes a record.
+	 *
+	 * @param out
+	 * @param position
+	 * @param outcome  The final state of the game.
+	 * @throws IOException
+	 */
+	public static void write(DataOutput out, Snapshot position, GameState outcome) throws IOException {
+		position.write(out);
+		out.writeByte(switch (outcome) {
+		case WIN_Black -> 2;
+		case DRAW -> 1;
+		case WIN_White -> 0;
+		case IN_PROGRESS -> throw new IllegalArgumentException("The game is not over.");
+		});
+	}
+
+	/**
+	 * A record read from a set.
+	 */
+	public static final class Record {
+
+		private final Snapshot position;
+		private final int outcome;
+
+		private Record(Snapshot position, int outcome) {
+			this.position = position;
+			this.outcome = outcome;
+		}
+
+		public Snapshot position() {
+			return this.position;
+		}
+
+		/**
+		 * Returns the score of the game for black: 1 for a win, 0.5 for a draw and 0
+		 * for a loss.
+		 *
+		 * @return
+		 */
+		public double result() {
+			return this.outcome / 2.0;
+		}
+	}
+
+	/**
+	 * Reads the next record, or returns null at the end of the set.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static Record read(DataInput in) throws IOException {
+		Snapshot position;
+		try {
+			position = Snapshot.read(in);
+		} catch (EOFException e) {
+			return null;
+		}
+		int outcome = in.readUnsignedByte();
+		if (outcome > 2)
+			throw new IOException("Malformed outcome: " + outcome);
+		return new Record(position, outcome);
+	}
+}
@@ -0,0 +1,107 @@
+package tuning;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import inteligenca.Inteligenca;
+import inteligenca.TranspositionTable;
+import logika.Igra;
+import logika.Igra.GameState;
+import logika.Snapshot;
+
+/**
+ * Records labelled positions for WeightTuner by letting the computer play
+ * against itself. Each game starts with a few random moves near the center, so
+ * that the games differ, and every position after them is recorded with the
+ * outcome of the game. Games are played in parallel, one per core.
+ *
+ * A set is reproducible: the random moves of a game are seeded by its number,
+ * moves are searched to a fixed depth, and every game has its own transposition
+ * table, so that no game sees the searches of another.
+ *
+ * Usage: PositionRecorder <file> [games] [random moves]
+ */
+
+public class PositionRecorder {
+
+	/**
+	 * Moves are searched to a fixed depth, so that a set is reproducible.
+	 */
+	private static final int DEPTH = 4;
+
+	/**
+	 * Size of the table of a game.
+	 */
+	private static final int TABLE = 1 << 18;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: PositionRecorder <file> [games] [random moves]");
+			System.exit(1);
+		}
+		String file = args[0];
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int opening = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		long start = System.nanoTime();
+		long positions = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			// Games are written in order of their numbers.
+			List<Game> played = IntStream.range(0, games).parallel().mapToObj(seed -> play(seed, opening)).toList();
+			for (Game game : played) {
+				for (Snapshot position : game.positions) {
+					Dataset.write(out, position, game.outcome);
+					positions++;
+				}
+			}
+		}
+
+		System.out.printf("games: %d, positions: %d, time: %.1f s%n", games, positions,
+				(System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Positions of a game and its outcome.
+	 */
+	private static final class Game {
+
+		private final List<Snapshot> positions = new ArrayList<Snapshot>();
+		private GameState outcome;
+	}
+
+	/**
+	 * Plays a game of the computer against itself.
+	 */
+	private static Game play(int seed, int opening) {
+		SplittableRandom rand = new SplittableRandom(seed);
+		Igra game = new Igra();
+		Game record = new Game();
+
+		// Random moves within three fields of the center.
+		int middle = game.size() / 2;
+		for (int i = 0; i < opening && game.state() == GameState.IN_PROGRESS; i++) {
+			int move;
+			do {
+				move = game.index(middle - 3 + rand.nextInt(7), middle - 3 + rand.nextInt(7));
+			} while (!game.isValidMove(move));
+			game.play(move);
+		}
+
+		Inteligenca bot = new Inteligenca("Recorder", Color.BLACK, new TranspositionTable(TABLE));
+		bot.setLimits(DEPTH, 0, 0);
+		bot.setSeed(seed);
+		while (game.state() == GameState.IN_PROGRESS) {
+			record.positions.add(game.snapshot());
+			game.play(bot.calculate(game));
+		}
+		record.outcome = game.state();
+		return record;
+	}
+}
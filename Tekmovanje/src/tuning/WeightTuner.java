@@ -0,0 +1,331 @@
+package tuning;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import inteligenca.Evaluator;
+import inteligenca.Patterns;
+import logika.Igra.Player;
+
+/**
+ * Tunes the weights of the patterns (Texel's method). Every position of a set
+ * recorded by PositionRecorder is labelled with the outcome of its game, and
+ * the evaluation, squashed by a sigmoid, is read as the predicted score:
+ *
+ * predicted = 1 / (1 + exp(-evaluation / K))
+ *
+ * The weights are tuned to minimise the mean squared error of the prediction.
+ * The scale K is fitted to the starting weights first, so that the tuned
+ * weights keep the scale of the evaluation.
+ *
+ * The evaluation is linear in the weights: it is the sum of the weights
+ * multiplied by the counts of the patterns (see Evaluator.counts). A pattern
+ * and its mirror image share a weight (see Patterns.mirror), so they are tuned
+ * as a single feature, the sum of their counts. So the counts of every position
+ * are computed once, while the set is streamed from the
+ * file, and each step of the tuning only runs over compact arrays of counts.
+ * Both the counting and the steps are split between all cores with fork-join.
+ *
+ * Usage: WeightTuner <positions> [weights file] [iterations]
+ */
+
+public class WeightTuner {
+
+	// MARK: - Static
+
+	/**
+	 * Number of positions counted or evaluated in a single task.
+	 */
+	private static final int BATCH = 4096;
+
+	/**
+	 * Step size (in units of weight) and moment decays of Adam.
+	 */
+	private static final double RATE = 20;
+	private static final double BETA1 = 0.9;
+	private static final double BETA2 = 0.999;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: WeightTuner <positions> [weights file] [iterations]");
+			System.exit(1);
+		}
+		String output = args.length > 1 ? args[1] : Patterns.WEIGHTS;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		Patterns patterns = Patterns.DEFAULT;
+		long start = System.nanoTime();
+		WeightTuner tuner = new WeightTuner(patterns);
+		tuner.load(args[0]);
+		double time = (System.nanoTime() - start) / 1e9;
+		System.out.printf("positions: %d, loaded in %.1f s (%.0f positions/s)%n", tuner.size, time,
+				tuner.size / time);
+
+		double[] weights = new double[tuner.features];
+		for (int i = 0; i < patterns.size(); i++) {
+			weights[tuner.feature[i]] = patterns.weight(i);
+		}
+		tuner.fitScale(weights);
+		System.out.printf("K: %.1f, error: %.6f%n", tuner.scale, tuner.error(weights));
+
+		start = System.nanoTime();
+		tuner.tune(weights, iterations);
+		time = (System.nanoTime() - start) / 1e9;
+		System.out.printf("tuned in %.1f s (%.0f positions/s), error: %.6f%n", time,
+				(double) tuner.size * iterations / time, tuner.error(weights));
+
+		int[] tuned = new int[patterns.size()];
+		for (int i = 0; i < tuned.length; i++) {
+			tuned[i] = (int) Math.round(weights[tuner.feature[i]]);
+			System.out.printf("%-8s %6d -> %6d%n", patterns.shape(i), patterns.weight(i), tuned[i]);
+		}
+		patterns.withWeights(tuned).save(Paths.get(output),
+				"Tuned by WeightTuner on " + tuner.size + " positions from " + args[0]);
+		System.out.println("weights: " + output);
+	}
+
+	// MARK: - Properties
+
+	private final Patterns patterns;
+
+	/**
+	 * The feature of each pattern, shared with its mirror image, and the number
+	 * of features, i.e. counts per position.
+	 */
+	private final int[] feature;
+	private final int features;
+
+	/**
+	 * Counts of the patterns of all positions, from the point of view of black,
+	 * one position after another, and the results of the positions.
+	 */
+	private short[] counts = new short[0];
+	private double[] results = new double[0];
+	private int size;
+
+	/**
+	 * The scale K of the sigmoid.
+	 */
+	private double scale = 1;
+
+	/**
+	 * The largest magnitude of a weight. The score of a window is a sum of at most
+	 * one weight of each pattern, so its range stays within Patterns.MAX_RANGE and
+	 * the tuned weights can be loaded.
+	 */
+	private final double limit;
+
+	// MARK: - Constructor
+
+	public WeightTuner(Patterns patterns) {
+		this.patterns = patterns;
+		this.feature = new int[patterns.size()];
+		int features = 0;
+		for (int i = 0; i < patterns.size(); i++) {
+			int mirror = patterns.mirror(i);
+			if (mirror < 0)
+				throw new IllegalArgumentException("Pattern has no mirror image: " + patterns.shape(i));
+			this.feature[i] = (mirror < i) ? this.feature[mirror] : features++;
+		}
+		this.features = features;
+		this.limit = Patterns.MAX_RANGE / patterns.size();
+	}
+
+	// MARK: - Loading
+
+	/**
+	 * Streams the positions from the file, counting the patterns of each batch of
+	 * positions in parallel.
+	 */
+	private void load(String file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			List<Dataset.Record> batch = new ArrayList<Dataset.Record>(BATCH * 16);
+			for (Dataset.Record record = Dataset.read(in); record != null; record = Dataset.read(in)) {
+				batch.add(record);
+				if (batch.size() == BATCH * 16) {
+					this.add(batch);
+					batch.clear();
+				}
+			}
+			this.add(batch);
+		}
+	}
+
+	private void add(List<Dataset.Record> batch) {
+		int first = this.size;
+		this.size += batch.size();
+		if (this.size > this.results.length) {
+			int capacity = Math.max(this.size, 2 * this.results.length);
+			this.results = Arrays.copyOf(this.results, capacity);
+			this.counts = Arrays.copyOf(this.counts, capacity * this.features);
+		}
+		ForkJoinPool.commonPool().invoke(new Count(batch, first, 0, batch.size()));
+	}
+
+	/**
+	 * Counts the patterns of the records from @from to @to of a batch.
+	 */
+	@SuppressWarnings("serial")
+	private final class Count extends RecursiveTask<Void> {
+
+		private final List<Dataset.Record> batch;
+		private final int first;
+		private final int from;
+		private final int to;
+
+		Count(List<Dataset.Record> batch, int first, int from, int to) {
+			this.batch = batch;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Void compute() {
+			if (this.to - this.from > BATCH) {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new Count(this.batch, this.first, this.from, middle),
+						new Count(this.batch, this.first, middle, this.to));
+				return null;
+			}
+			Evaluator evaluator = new Evaluator(patterns);
+			int[] counts = new int[patterns.size()];
+			for (int i = this.from; i < this.to; i++) {
+				Dataset.Record record = this.batch.get(i);
+				evaluator.counts(record.position().toGame(), Player.Black, counts);
+				int n = this.first + i;
+				results[n] = record.result();
+				for (int p = 0; p < counts.length; p++) {
+					WeightTuner.this.counts[n * features + feature[p]] += (short) counts[p];
+				}
+			}
+			return null;
+		}
+	}
+
+	// MARK: - Tuning
+
+	/**
+	 * Fits the scale of the sigmoid to the @weights by a golden-section search.
+	 */
+	private void fitScale(double[] weights) {
+		double low = 10;
+		double high = 1e6;
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		// The error is searched on a logarithmic scale.
+		double a = Math.log(low);
+		double b = Math.log(high);
+		for (int i = 0; i < 60; i++) {
+			double c = b - ratio * (b - a);
+			double d = a + ratio * (b - a);
+			this.scale = Math.exp(c);
+			double errorC = this.error(weights);
+			this.scale = Math.exp(d);
+			double errorD = this.error(weights);
+			if (errorC < errorD)
+				b = d;
+			else
+				a = c;
+		}
+		this.scale = Math.exp((a + b) / 2);
+	}
+
+	/**
+	 * Runs Adam on the mean squared error for a number of @iterations.
+	 */
+	private void tune(double[] weights, int iterations) {
+		double[] m = new double[this.features];
+		double[] v = new double[this.features];
+		for (int t = 1; t <= iterations; t++) {
+			double[] gradient = this.pass(weights);
+			for (int i = 0; i < this.features; i++) {
+				double g = gradient[i + 1];
+				m[i] = BETA1 * m[i] + (1 - BETA1) * g;
+				v[i] = BETA2 * v[i] + (1 - BETA2) * g * g;
+				double mHat = m[i] / (1 - Math.pow(BETA1, t));
+				double vHat = v[i] / (1 - Math.pow(BETA2, t));
+				weights[i] -= RATE * mHat / (Math.sqrt(vHat) + 1e-12);
+				weights[i] = Math.max(-this.limit, Math.min(this.limit, weights[i]));
+			}
+			if (t % 100 == 0)
+				System.out.printf("iteration: %d, error: %.6f%n", t, gradient[0]);
+		}
+	}
+
+	/**
+	 * Returns the mean squared error of the @weights.
+	 */
+	private double error(double[] weights) {
+		return this.pass(weights)[0];
+	}
+
+	/**
+	 * Returns the mean squared error of the @weights, followed by its gradient.
+	 */
+	private double[] pass(double[] weights) {
+		double[] sums = ForkJoinPool.commonPool().invoke(new Pass(weights, 0, this.size));
+		for (int i = 0; i < sums.length; i++) {
+			sums[i] /= this.size;
+		}
+		return sums;
+	}
+
+	/**
+	 * Sums the squared errors of the positions from @from to @to, and their
+	 * gradients.
+	 */
+	@SuppressWarnings("serial")
+	private final class Pass extends RecursiveTask<double[]> {
+
+		private final double[] weights;
+		private final int from;
+		private final int to;
+
+		Pass(double[] weights, int from, int to) {
+			this.weights = weights;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (this.to - this.from > BATCH) {
+				int middle = (this.from + this.to) >>> 1;
+				Pass left = new Pass(this.weights, this.from, middle);
+				left.fork();
+				double[] sums = new Pass(this.weights, middle, this.to).compute();
+				double[] other = left.join();
+				for (int i = 0; i < sums.length; i++) {
+					sums[i] += other[i];
+				}
+				return sums;
+			}
+
+			double[] sums = new double[features + 1];
+			for (int n = this.from; n < this.to; n++) {
+				int offset = n * features;
+				double evaluation = 0;
+				for (int f = 0; f < features; f++) {
+					evaluation += this.weights[f] * counts[offset + f];
+				}
+				double predicted = 1 / (1 + Math.exp(-evaluation / scale));
+				double difference = predicted - results[n];
+				sums[0] += difference * difference;
+				// Derivative of the squared error by the evaluation.
+				double slope = 2 * difference * predicted * (1 - predicted) / scale;
+				for (int f = 0; f < features; f++) {
+					sums[f + 1] += slope * counts[offset + f];
+				}
+			}
+			return sums;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-width bitboard. The width is given at construction (see
+ * logika.Layout for how fields of the board map to bits) and the bits are
+ * stored in a handful of longs (four for a 15x15 board), so that all operations
+ * work on a few words and never allocate. Operations modify the bitboard in
+ * place and return it, so that they can be chained:
+ *
+ * fours.copy(stones).shl(i).and(stones)
+ *
+ * As with java.util.BitSet, the n-th bit represents the n-th field of the board.
+ * Bitboards combined by an operation must have the same width.
+ */
+
+public final class Bitboard {
+
+	private final long[] words;
+
+	// MARK: - Constructor
+
+	/**
+	 * Creates an empty bitboard with room for @bits bits.
+	 */
+	public Bitboard(int bits) {
+		this.words = new long[(bits + 63) >>> 6];
+	}
+
+	/**
+	 * Creates a copy of another bitboard.
+	 *
+	 * @param board
+	 */
+	public Bitboard(Bitboard board) {
+		this.words = board.words.clone();
+	}
+
+	// MARK: - Fields
+
+	public boolean get(int n) {
+		return (this.words[n >>> 6] & (1L << n)) != 0;
+	}
+
+	public void set(int n) {
+		this.words[n >>> 6] |= 1L << n;
+	}
+
+	public void clear(int n) {
+		this.words[n >>> 6] &= ~(1L << n);
+	}
+
+	/**
+	 * Sets the fields from @from (inclusive) to @to (exclusive).
+	 */
+	public void set(int from, int to) {
+		for (int n = from; n < to; n++) {
+			this.set(n);
+		}
+	}
+
+	/**
+	 * Clears all the fields.
+	 */
+	public void clear() {
+		Arrays.fill(this.words, 0);
+	}
+
+	// MARK: - Operations
+
+	/**
+	 * Overwrites this bitboard with the bits of @board.
+	 */
+	public Bitboard copy(Bitboard board) {
+		System.arraycopy(board.words, 0, this.words, 0, this.words.length);
+		return this;
+	}
+
+	public Bitboard and(Bitboard board) {
+		for (int i = 0; i < this.words.length; i++) {
+			this.words[i] &= board.words[i];
+		}
+		return this;
+	}
+
+	public Bitboard or(Bitboard board) {
+		for (int i = 0; i < this.words.length; i++) {
+			this.words[i] |= board.words[i];
+		}
+		return this;
+	}
+
+	public Bitboard andNot(Bitboard board) {
+		for (int i = 0; i < this.words.length; i++) {
+			this.words[i] &= ~board.words[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Shifts the board left a number of times, i.e. the n-th bit of the result is
+	 * the (n + times)-th bit of the original. This is the in-place counterpart of
+	 * Util.shl.
+	 */
+	public Bitboard shl(int times) {
+		int skip = times >>> 6;
+		int bits = times & 63;
+		int length = this.words.length;
+		for (int i = 0; i < length; i++) {
+			long lo = i + skip < length ? this.words[i + skip] : 0;
+			long hi = i + skip + 1 < length ? this.words[i + skip + 1] : 0;
+			this.words[i] = bits == 0 ? lo : (lo >>> bits) | (hi << (64 - bits));
+		}
+		return this;
+	}
+
+	// MARK: - Queries
+
+	/**
+	 * Returns the number of set bits.
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (long word : this.words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the fields set in every one of the selected bitboards: @a[k] for
+	 * each bit k of @aMask, @b[k] for each bit k of @bMask and @c[k] for each bit
+	 * k of @cMask. At least one board has to be selected. Words are processed one
+	 * at a time across all selected boards, so no intermediate bitboard is
+	 * written.
+	 *
+	 * @param a
+	 * @param aMask
+	 * @param b
+	 * @param bMask
+	 * @param c
+	 * @param cMask
+	 * @return
+	 */
+	public static int countAll(Bitboard[] a, int aMask, Bitboard[] b, int bMask, Bitboard[] c, int cMask) {
+		Bitboard any = (aMask != 0) ? a[Integer.numberOfTrailingZeros(aMask)]
+				: (bMask != 0) ? b[Integer.numberOfTrailingZeros(bMask)] : c[Integer.numberOfTrailingZeros(cMask)];
+		int count = 0;
+		for (int i = 0; i < any.words.length; i++) {
+			long word = -1L;
+			for (int m = aMask; m != 0; m &= m - 1) {
+				word &= a[Integer.numberOfTrailingZeros(m)].words[i];
+			}
+			for (int m = bMask; m != 0; m &= m - 1) {
+				word &= b[Integer.numberOfTrailingZeros(m)].words[i];
+			}
+			for (int m = cMask; m != 0; m &= m - 1) {
+				word &= c[Integer.numberOfTrailingZeros(m)].words[i];
+			}
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the i-th word of 64 bits, i.e. the fields from 64 * i on. Words let
+	 * a bitboard pass over many boards keep the words of all of them at hand.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public long word(int i) {
+		return this.words[i];
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return
+	 */
+	public int words() {
+		return this.words.length;
+	}
+
+	public boolean isEmpty() {
+		for (long word : this.words) {
+			if (word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first set bit at or after @from, or -1 if there is
+	 * none. Set bits can be iterated with
+	 *
+	 * for (int n = b.nextSetBit(0); n >= 0; n = b.nextSetBit(n + 1))
+	 */
+	public int nextSetBit(int from) {
+		int i = from >>> 6;
+		if (i >= this.words.length)
+			return -1;
+		long word = this.words[i] & (-1L << from);
+		while (true) {
+			if (word != 0)
+				return (i << 6) + Long.numberOfTrailingZeros(word);
+			if (++i == this.words.length)
+				return -1;
+			word = this.words[i];
+		}
+	}
+
+	// MARK: - Overrides
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (!(o instanceof Bitboard))
+			return false;
+		return Arrays.equals(this.words, ((Bitboard) o).words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.words);
+	}
+}
@@ -44,7 +44,7 @@ public class BoardView extends JPanel implements IGameView {
 		// Points
 		for (int y = 0; y < this.controller.size(); y++) {
 			for (int x = 0; x < this.controller.size(); x++) {
-				int n = y * this.controller.size() + x;
+				int n = this.controller.index(x, y);
 
 				Point coord = this.point(n);
 
@@ -136,8 +136,8 @@ public class BoardView extends JPanel implements IGameView {
 		int container = Math.min(width, height);
 		int spacing = this.spacing();
 
-		int x = n % this.controller.size();
-		int y = n / this.controller.size();
+		int x = this.controller.x(n);
+		int y = this.controller.y(n);
 
 		/**
 		 * We calculate the center of the stone by considering all the margins from the
@@ -11,11 +11,14 @@ import java.awt.event.ItemListener;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 
 import controller.IGameSettingsController;
 import logika.GameSettings;
+import logika.Layout;
 import logika.Player;
 
 /**
@@ -36,6 +39,7 @@ public class GameSettingsView extends JPanel implements ActionListener {
 	private PlayerSettingsView white;
 	private PlayerSettingsView black;
 
+	private JTextField size;
 	private JButton start;
 
 	// MARK: - Constructor
@@ -57,6 +61,12 @@ public class GameSettingsView extends JPanel implements ActionListener {
 		this.add(this.black);
 		this.add(this.white);
 		
+		JPanel board = new JPanel(new FlowLayout());
+		board.add(new JLabel("Velikost"));
+		this.size = new JTextField(String.valueOf(settings.size), 3);
+		board.add(this.size);
+		this.add(board);
+		
 		this.start = this.button(this, "Začni");
 	}
 
@@ -67,12 +77,36 @@ public class GameSettingsView extends JPanel implements ActionListener {
 		Object source = e.getSource();
 
 		if (source == this.start) {
+			int size = this.boardSize();
+			if (size < 0) {
+				JOptionPane.showMessageDialog(this,
+						"Velikost mora biti celo število od " + Layout.MIN_SIZE + " do " + Layout.MAX_SIZE + ".",
+						"Neveljavna velikost", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			this.controller.settings().size = size;
 			this.controller.start();
 		}
 	}
 
 	// MARK: - View
 
+	/**
+	 * Reads the board size from the input, one of the sizes the engine supports
+	 * (see Layout).
+	 * 
+	 * @return The size, or -1 if the input is not a valid size.
+	 */
+	private int boardSize() {
+		try {
+			int size = Integer.parseInt(this.size.getText().trim());
+			if (size >= Layout.MIN_SIZE && size <= Layout.MAX_SIZE)
+				return size;
+		} catch (NumberFormatException e) {
+		}
+		return -1;
+	}
+
 	/**
 	 * Adds a new button to the panel with a given label.
 	 * 
@@ -27,6 +27,7 @@ public class Window extends JFrame implements ActionListener {
 	// MARK: - Components
 	
 	private JMenuItem startGameMenuItem;
+	private JMenuItem undoMenuItem;
 
 	// MARK: - Constructor
 
@@ -48,6 +49,11 @@ public class Window extends JFrame implements ActionListener {
 		igra_menu.add(this.startGameMenuItem);
 		
 		this.startGameMenuItem.addActionListener(this);
+
+		this.undoMenuItem = new JMenuItem("Razveljavi zadnjo potezo.");
+		igra_menu.add(this.undoMenuItem);
+
+		this.undoMenuItem.addActionListener(this);
 	}
 
 	// MARK: - Events
@@ -59,5 +65,9 @@ public class Window extends JFrame implements ActionListener {
 		if (source == this.startGameMenuItem) {
 			this.controller.setup();
 		}
+
+		if (source == this.undoMenuItem) {
+			this.controller.undo();
+		}
 	}
 }